@@ -0,0 +1,39 @@
+package net.anatomyworld.hfd;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/** Synthetic inputs shared by the benchmarks (temp dirs, random payloads). */
+final class BenchFiles {
+
+    static final Installer.Log QUIET = s -> {};
+
+    private BenchFiles() {}
+
+    static Path tempDir(String prefix) {
+        try { return Files.createTempDirectory(prefix); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    /** Deterministic pseudo-random (incompressible) bytes. */
+    static byte[] randomBytes(int size, long seed) {
+        byte[] b = new byte[size];
+        SplittableRandom r = new SplittableRandom(seed);
+        for (int i = 0; i < size; i += 8) {
+            long v = r.nextLong();
+            for (int j = 0; j < 8 && i + j < size; j++) b[i + j] = (byte) (v >>> (j * 8));
+        }
+        return b;
+    }
+
+    static void deleteTree(Path root) {
+        if (root == null || !Files.exists(root)) return;
+        try (Stream<Path> s = Files.walk(root)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> { try { Files.deleteIfExists(p); } catch (IOException ignored) {} });
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,66 @@
+package net.anatomyworld.hfd;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/** The post-HTTP part of a download: streamed temp write, SHA-512 verify, atomic move. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadPathBenchmark {
+
+    @Param({"1048576", "33554432"}) // 1 MiB, 32 MiB
+    public int size;
+
+    private Path work;
+    private Path target;
+    private Path hashed;
+    private byte[] body;
+    private String sha512;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        work = BenchFiles.tempDir("hfd-bench-dl-");
+        target = work.resolve("mod.jar");
+        hashed = work.resolve("hashed.jar");
+        body = BenchFiles.randomBytes(size, 42);
+        Files.write(hashed, body);
+        byte[] d = MessageDigest.getInstance("SHA-512").digest(body);
+        sha512 = String.format("%0128x", new BigInteger(1, d));
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        BenchFiles.deleteTree(work);
+    }
+
+    @Benchmark
+    public void verifySha512() throws Exception {
+        ModFetcher.verifySha512(hashed, sha512);
+    }
+
+    @Benchmark
+    public Path writeVerifyMove() throws Exception {
+        Path tmp = ModFetcher.writeTemp(new ByteArrayInputStream(body), target);
+        ModFetcher.verifySha512(tmp, sha512);
+        ModFetcher.moveIntoPlace(tmp, target);
+        return target;
+    }
+
+    @Benchmark
+    public Path writeMove() throws IOException {
+        Path tmp = ModFetcher.writeTemp(new ByteArrayInputStream(body), target);
+        ModFetcher.moveIntoPlace(tmp, target);
+        return target;
+    }
+}
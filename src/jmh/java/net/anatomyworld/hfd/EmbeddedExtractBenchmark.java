@@ -0,0 +1,76 @@
+package net.anatomyworld.hfd;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * {@code extractEmbeddedMods} against a synthetic fat jar: {@code payloadMb} of mod jars under
+ * embedded/mods/ plus a few thousand small "shaded class" entries that the scan has to skip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EmbeddedExtractBenchmark {
+
+    @Param({"256"})
+    public int payloadMb;
+
+    @Param({"40"})
+    public int mods;
+
+    @Param({"4000"})
+    public int classEntries;
+
+    private Path work;
+    private Path fatJar;
+    private Path modsDir;
+    private Main main;
+
+    @Setup(Level.Trial)
+    public void buildJar() throws IOException {
+        work = BenchFiles.tempDir("hfd-bench-extract-");
+        fatJar = work.resolve("HFD-Installer.jar");
+        modsDir = work.resolve("mods");
+        Files.createDirectories(modsDir);
+
+        int perMod = (int) ((long) payloadMb * 1024 * 1024 / mods);
+        byte[] classBytes = BenchFiles.randomBytes(2048, 7);
+        try (OutputStream fo = Files.newOutputStream(fatJar); ZipOutputStream zos = new ZipOutputStream(fo)) {
+            zos.setLevel(1); // setup speed only; mod jars are incompressible anyway
+            for (int i = 0; i < classEntries; i++) {
+                zos.putNextEntry(new ZipEntry("com/example/shaded/C" + i + ".class"));
+                zos.write(classBytes);
+                zos.closeEntry();
+            }
+            for (int i = 0; i < mods; i++) {
+                zos.putNextEntry(new ZipEntry("embedded/mods/mod-" + i + ".jar.bin"));
+                zos.write(BenchFiles.randomBytes(perMod, i));
+                zos.closeEntry();
+            }
+        }
+        main = new Main() {
+            @Override protected Path selfJarPath() { return fatJar; }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        BenchFiles.deleteTree(work);
+    }
+
+    @Benchmark
+    public Path extract() throws Exception {
+        main.extractEmbeddedMods(modsDir, BenchFiles.QUIET);
+        return modsDir;
+    }
+}
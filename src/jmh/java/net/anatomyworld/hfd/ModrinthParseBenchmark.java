@@ -0,0 +1,70 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/** Version-list parsing and file choice on large Modrinth-shaped /version responses. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModrinthParseBenchmark {
+
+    @Param({"50", "2000"})
+    public int versions;
+
+    private String body;
+    private JsonNode parsed;
+    private JsonNode files;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ArrayNode arr = Main.JSON.createArrayNode();
+        Instant t = Instant.parse("2023-01-01T00:00:00Z");
+        for (int i = 0; i < versions; i++) {
+            ObjectNode v = arr.addObject();
+            v.put("id", "v" + i);
+            v.put("version_number", "1." + i);
+            v.put("date_published", t.plusSeconds(3600L * ((i * 7919L) % versions)).toString());
+            v.putArray("loaders").add(i % 3 == 0 ? "fabric" : "neoforge").add("forge");
+            v.putArray("game_versions").add("1.21.8").add("1.21.7");
+            v.put("changelog", "x".repeat(400));
+            ArrayNode fs = v.putArray("files");
+            for (String variant : new String[]{"fabric", "forge", "neoforge"}) {
+                ObjectNode f = fs.addObject();
+                f.put("url", "https://cdn.modrinth.com/data/abc/versions/" + i + "/mod-" + variant + "-1." + i + ".jar");
+                f.put("filename", "mod-" + variant + "-1." + i + ".jar");
+                f.put("primary", "forge".equals(variant));
+                f.putObject("hashes").put("sha512", "0".repeat(128)).put("sha1", "0".repeat(40));
+                f.put("size", 123456);
+            }
+        }
+        body = Main.JSON.writeValueAsString(arr);
+        parsed = arr;
+        files = arr.get(0).get("files");
+    }
+
+    @Benchmark
+    public ModFetcher.FileInfo parseAndChoose() throws Exception {
+        JsonNode arr = Main.JSON.readTree(body);
+        JsonNode newest = ModFetcher.newestWithLoader(arr, "neoforge");
+        return ModFetcher.chooseNeoForgeFile(newest.get("files"));
+    }
+
+    @Benchmark
+    public JsonNode newestOnly() {
+        return ModFetcher.newestWithLoader(parsed, "neoforge");
+    }
+
+    @Benchmark
+    public ModFetcher.FileInfo chooseNeoForgeFile() {
+        return ModFetcher.chooseNeoForgeFile(files);
+    }
+}
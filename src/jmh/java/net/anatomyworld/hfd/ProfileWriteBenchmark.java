@@ -0,0 +1,68 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** launcher_profiles.json editing with many existing installations, and servers.dat writing. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileWriteBenchmark {
+
+    @Param({"20", "1000"})
+    public int profiles;
+
+    private Path work;
+    private Path profilesJson;
+    private Path gameDir;
+    private Path serversDat;
+    private Main main;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        work = BenchFiles.tempDir("hfd-bench-profiles-");
+        profilesJson = work.resolve("launcher_profiles.json");
+        gameDir = work.resolve("HFD");
+        serversDat = gameDir.resolve("servers.dat");
+        main = new Main();
+
+        ObjectNode root = Main.JSON.createObjectNode();
+        ObjectNode ps = root.putObject("profiles");
+        for (int i = 0; i < profiles; i++) {
+            ObjectNode p = ps.putObject("profile-" + i);
+            p.put("name", "Profile " + i);
+            p.put("type", "custom");
+            p.put("lastVersionId", "1.20." + (i % 6));
+            p.put("gameDir", work.resolve("games").resolve("g" + i).toString());
+            p.put("icon", "data:image/png;base64," + "A".repeat(4096)); // launcher icons are big inline blobs
+        }
+        root.putObject("settings").put("enableSnapshots", false);
+        Files.createDirectories(gameDir);
+        Main.JSON.writerWithDefaultPrettyPrinter().writeValue(profilesJson.toFile(), root);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        BenchFiles.deleteTree(work);
+    }
+
+    @Benchmark
+    public Path pruneAndUpsert() throws Exception {
+        main.pruneProfilesUsingVersion(profilesJson, "neoforge-21.8.39", BenchFiles.QUIET);
+        main.upsertHfdProfile(profilesJson, gameDir, BenchFiles.QUIET);
+        return profilesJson;
+    }
+
+    @Benchmark
+    public Path writeServersDat() throws Exception {
+        main.writeServersDat(serversDat, "HarambeFD", "harambefinaldestination.world", true);
+        return serversDat;
+    }
+}
@@ -0,0 +1,104 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Drives {@link ModFetcher#fetchAll} against {@link MockModrinth} with large synthetic configs
+ * and prints wall time, throughput and retry counts per scenario.
+ *
+ * <p>Run with {@code ./gradlew loadTest} (optional {@code -Pmods=200 -PmodKb=512}).
+ */
+public final class FetchLoadTest {
+
+    private record Result(String scenario, long wallMs, long bytes, long placed, long failed,
+                          long retries, long requests, long faultsServed) {}
+
+    public static void main(String[] args) throws Exception {
+        int mods = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int modKb = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        Map<String, MockModrinth.Faults> scenarios = new LinkedHashMap<>();
+        scenarios.put("clean", MockModrinth.Faults.NONE);
+        scenarios.put("latency-50ms", new MockModrinth.Faults(50, 0, 0, 0, 0));
+        scenarios.put("bw-8MBps", new MockModrinth.Faults(5, 8L * 1024 * 1024, 0, 0, 0));
+        scenarios.put("errors-5%", new MockModrinth.Faults(5, 0, 0.05, 0, 0));
+        scenarios.put("429-5%", new MockModrinth.Faults(5, 0, 0, 0.05, 0));
+        scenarios.put("truncate-5%", new MockModrinth.Faults(5, 0, 0, 0, 0.05));
+
+        System.out.printf("fetchAll load test: %d mods × %d KiB%n", mods, modKb);
+        System.out.printf("%-14s %9s %10s %7s %7s %8s %9s %7s%n",
+                "scenario", "wall ms", "MiB/s", "placed", "failed", "retries", "requests", "faults");
+        for (var e : scenarios.entrySet()) {
+            Result r = run(e.getKey(), e.getValue(), mods, modKb * 1024);
+            double mibs = r.wallMs == 0 ? 0 : (r.bytes / 1048576.0) / (r.wallMs / 1000.0);
+            System.out.printf("%-14s %9d %10.1f %7d %7d %8d %9d %7d%n",
+                    r.scenario, r.wallMs, mibs, r.placed, r.failed, r.retries, r.requests, r.faultsServed);
+        }
+    }
+
+    static Result run(String name, MockModrinth.Faults faults, int mods, int size) throws Exception {
+        Path gameDir = Files.createTempDirectory("hfd-loadtest-");
+        Path modsDir = Files.createDirectories(gameDir.resolve("mods"));
+        Path store = Files.createTempDirectory("hfd-loadtest-store-"); // cold artifact store per scenario
+        try (MockModrinth mock = new MockModrinth()) {
+            ArrayNode config = Main.JSON.createArrayNode();
+            for (int i = 0; i < mods; i++) {
+                String slug = "mod-" + i;
+                mock.addProject(slug, size);
+                ObjectNode rule = config.addObject();
+                rule.put("name", "Mod " + i);
+                rule.putArray("cleanup").add("^" + slug + "-.*\\.jar$");
+                ObjectNode src = rule.putArray("sources").addObject();
+                src.put("type", "modrinth_filtered");
+                src.put("slug", slug);
+                src.put("loader", "neoforge");
+                src.put("mc", "${mc}");
+                src.put("requireLoader", "neoforge");
+            }
+            mock.faults(faults);
+
+            String prev = System.getProperty("hfd.modrinth.api");
+            String prevStore = System.getProperty("hfd.store");
+            System.setProperty("hfd.modrinth.api", mock.baseUrl());
+            System.setProperty("hfd.store", store.toString());
+            TimingReport report = new TimingReport();
+            AtomicLong failed = new AtomicLong();
+            Installer.Log log = new InstallEvents(s -> {}).listen(report).listen(ev -> {
+                if (ev instanceof InstallEvent.Error) failed.incrementAndGet();
+            });
+
+            long t0 = System.nanoTime();
+            try {
+                new ModFetcher().fetchAll(modsDir, Main.TARGET_MC_VERSION, config, log);
+            } finally {
+                if (prev == null) System.clearProperty("hfd.modrinth.api"); else System.setProperty("hfd.modrinth.api", prev);
+                if (prevStore == null) System.clearProperty("hfd.store"); else System.setProperty("hfd.store", prevStore);
+            }
+            long wallMs = (System.nanoTime() - t0) / 1_000_000L;
+
+            long placed;
+            try (Stream<Path> s = Files.list(modsDir)) { placed = s.filter(p -> p.toString().endsWith(".jar")).count(); }
+            return new Result(name, wallMs, report.bytesDownloaded(), placed, failed.get(), report.retries(),
+                    mock.requests.get(), mock.served5xx.get() + mock.served429.get() + mock.truncated.get());
+        } finally {
+            deleteTree(gameDir);
+            deleteTree(store);
+        }
+    }
+
+    private static void deleteTree(Path root) throws java.io.IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> s = Files.walk(root)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
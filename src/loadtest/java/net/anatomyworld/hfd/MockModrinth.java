@@ -0,0 +1,188 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback stand-in for api.modrinth.com and its CDN.
+ * Serves {@code /v2/project/{slug}/version[/{number}]} and {@code /cdn/{slug}/{file}} for
+ * synthetic projects, with configurable latency, bandwidth and fault injection.
+ */
+final class MockModrinth implements AutoCloseable {
+
+    /** Fault/shape knobs; rates are probabilities per request (0..1). */
+    record Faults(long latencyMs, long bytesPerSec, double errorRate, double tooManyRate, double truncateRate) {
+        static final Faults NONE = new Faults(0, 0, 0, 0, 0);
+    }
+
+    private record Project(String slug, String versionNumber, String filename, byte[] jar, String sha512) {}
+
+    private final HttpServer server;
+    private final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "mock-modrinth");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Project> projects = new ConcurrentHashMap<>();
+    private volatile Faults faults = Faults.NONE;
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong served5xx = new AtomicLong();
+    final AtomicLong served429 = new AtomicLong();
+    final AtomicLong truncated = new AtomicLong();
+    final AtomicLong bytesSent = new AtomicLong();
+
+    MockModrinth() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v2/project/", this::handleApi);
+        server.createContext("/cdn/", this::handleCdn);
+        server.setExecutor(pool);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    void faults(Faults f) { this.faults = f; }
+
+    /** Register a project with one NeoForge version whose jar is {@code size} random bytes. */
+    void addProject(String slug, int size) {
+        byte[] jar = new byte[size];
+        new SplittableRandom(slug.hashCode()).nextBytes(jar);
+        String version = "1.0.0";
+        projects.put(slug, new Project(slug, version, slug + "-neoforge-" + version + ".jar", jar, sha512Hex(jar)));
+    }
+
+    @Override public void close() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    // ----------- Handlers ------------
+
+    private void handleApi(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (injectFault(ex)) return;
+            // /v2/project/{slug}/version  or  /v2/project/{slug}/version/{number}
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            Project p = parts.length >= 5 ? projects.get(parts[3]) : null;
+            if (p == null || !"version".equals(parts[4])) { send(ex, 404, "{\"error\":\"not_found\"}".getBytes(StandardCharsets.UTF_8)); return; }
+
+            byte[] body;
+            if (parts.length >= 6) {
+                if (!parts[5].equals(p.versionNumber)) { send(ex, 404, "{\"error\":\"not_found\"}".getBytes(StandardCharsets.UTF_8)); return; }
+                body = Main.JSON.writeValueAsBytes(versionNode(p));
+            } else {
+                ArrayNode arr = Main.JSON.createArrayNode();
+                arr.add(versionNode(p));
+                body = Main.JSON.writeValueAsBytes(arr);
+            }
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            send(ex, 200, body);
+        }
+    }
+
+    private void handleCdn(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (injectFault(ex)) return;
+            String[] parts = ex.getRequestURI().getPath().split("/"); // "", "cdn", slug, file
+            Project p = parts.length >= 4 ? projects.get(parts[2]) : null;
+            if (p == null || !p.filename.equals(parts[3])) { send(ex, 404, new byte[0]); return; }
+            send(ex, 200, p.jar);
+        }
+    }
+
+    private ObjectNode versionNode(Project p) {
+        ObjectNode v = Main.JSON.createObjectNode();
+        v.put("id", p.slug + "-" + p.versionNumber);
+        v.put("version_number", p.versionNumber);
+        v.put("date_published", Instant.parse("2025-01-01T00:00:00Z").toString());
+        v.putArray("loaders").add("neoforge");
+        v.putArray("game_versions").add(Main.TARGET_MC_VERSION);
+        ObjectNode f = v.putArray("files").addObject();
+        f.put("url", baseUrl() + "/cdn/" + p.slug + "/" + p.filename);
+        f.put("filename", p.filename);
+        f.put("primary", true);
+        f.put("size", p.jar.length);
+        f.putObject("hashes").put("sha512", p.sha512);
+        return v;
+    }
+
+    /** Applies latency and maybe answers with 500/429; true if the exchange was consumed. */
+    private boolean injectFault(HttpExchange ex) throws IOException {
+        requests.incrementAndGet();
+        Faults f = faults;
+        if (f.latencyMs > 0) sleep(f.latencyMs);
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        if (r.nextDouble() < f.tooManyRate) {
+            served429.incrementAndGet();
+            ex.getResponseHeaders().set("Retry-After", "1");
+            send(ex, 429, "{\"error\":\"ratelimited\"}".getBytes(StandardCharsets.UTF_8));
+            return true;
+        }
+        if (r.nextDouble() < f.errorRate) {
+            served5xx.incrementAndGet();
+            send(ex, 500, "{\"error\":\"boom\"}".getBytes(StandardCharsets.UTF_8));
+            return true;
+        }
+        return false;
+    }
+
+    private void send(HttpExchange ex, int status, byte[] body) throws IOException {
+        Faults f = faults;
+        boolean cut = status == 200 && body.length > 1 && ThreadLocalRandom.current().nextDouble() < f.truncateRate;
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length == 0) return;
+        int limit = cut ? body.length / 2 : body.length;
+        OutputStream out = ex.getResponseBody();
+        int chunk = 16 * 1024;
+        long startNs = System.nanoTime();
+        for (int off = 0; off < limit; off += chunk) {
+            int n = Math.min(chunk, limit - off);
+            out.write(body, off, n);
+            bytesSent.addAndGet(n);
+            if (f.bytesPerSec > 0) { // pace to the configured bandwidth
+                long dueNs = startNs + (off + n) * 1_000_000_000L / f.bytesPerSec;
+                long waitMs = (dueNs - System.nanoTime()) / 1_000_000L;
+                if (waitMs > 0) sleep(waitMs);
+            }
+        }
+        if (cut) {
+            truncated.incrementAndGet();
+            out.flush();
+            // closing short of Content-Length makes the server drop the connection mid-body
+        }
+    }
+
+    private static void sleep(long ms) {
+        try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    static String sha512Hex(byte[] data) {
+        try {
+            return String.format("%0128x", new BigInteger(1, MessageDigest.getInstance("SHA-512").digest(data)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
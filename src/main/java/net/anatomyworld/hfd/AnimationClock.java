@@ -0,0 +1,82 @@
+package net.anatomyworld.hfd;
+
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One ~60fps Swing timer shared by every animated component.
+ * The timer only runs while at least one {@link Animated} is registered and the
+ * attached window is showing (not iconified/hidden), so an idle window costs nothing.
+ * All methods must be called on the EDT.
+ */
+final class AnimationClock {
+
+    /** Per-frame callback; return false once settled to unregister. */
+    interface Animated { boolean tick(); }
+
+    private static final AnimationClock SHARED = new AnimationClock(16);
+
+    private final javax.swing.Timer timer;
+    private final List<Animated> active = new ArrayList<>();
+    private boolean paused = false;
+
+    private AnimationClock(int periodMs) {
+        timer = new javax.swing.Timer(periodMs, e -> frame());
+        timer.setCoalesce(true);
+    }
+
+    static AnimationClock shared() { return SHARED; }
+
+    /** Start ticking {@code a} (no-op if already registered). */
+    void register(Animated a) {
+        if (!active.contains(a)) active.add(a);
+        updateTimer();
+    }
+
+    void unregister(Animated a) {
+        active.remove(a);
+        updateTimer();
+    }
+
+    /** Pause while {@code w} is iconified or hidden; resume when it shows again. */
+    void attach(Window w) {
+        w.addWindowListener(new WindowAdapter() {
+            @Override public void windowIconified(WindowEvent e)   { setPaused(true); }
+            @Override public void windowDeiconified(WindowEvent e) { setPaused(false); }
+            @Override public void windowClosed(WindowEvent e)      { stop(); }
+        });
+        w.addComponentListener(new ComponentAdapter() {
+            @Override public void componentHidden(ComponentEvent e) { setPaused(true); }
+            @Override public void componentShown(ComponentEvent e)  { setPaused(false); }
+        });
+    }
+
+    /** Drop every registration and stop the timer. */
+    void stop() {
+        active.clear();
+        timer.stop();
+    }
+
+    private void setPaused(boolean p) {
+        paused = p;
+        updateTimer();
+    }
+
+    private void frame() {
+        for (int i = active.size() - 1; i >= 0; i--) {
+            if (!active.get(i).tick()) active.remove(i);
+        }
+        updateTimer();
+    }
+
+    private void updateTimer() {
+        boolean want = !paused && !active.isEmpty();
+        if (want && !timer.isRunning()) timer.start();
+        else if (!want && timer.isRunning()) timer.stop();
+    }
+}
@@ -0,0 +1,410 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Machine-wide, content-addressed (SHA-512) store of mod jars and installer payloads.
+ * Instances get files by hard link (or reflink, or copy as a last resort) so extra
+ * game dirs and reinstalls cost almost no I/O or space.
+ *
+ * <p>Layout: {@code objects/ab/<sha512>} plus {@code index.json} recording each object's
+ * size/mtime and the paths it was placed at; {@code .lock} serialises index updates and GC
+ * across installer processes. Lookups read an in-memory copy of the index, re-read only when
+ * the file changed on disk. Placed files are only ever replaced by atomic move, never
+ * written in place, so a hard-linked object can't be corrupted through its placement.
+ */
+final class ArtifactStore {
+
+    private record Meta(long size, long mtime, long lastUsed, Set<String> refs) {}
+
+    /** A placement already recorded is re-recorded (for {@link #gc}'s lastUsed) at most this often. */
+    private static final long TOUCH_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static volatile ArtifactStore shared;
+
+    private final Path root;
+    private final Path objects;
+    private final Path indexFile;
+    private final Path lockFile;
+
+    /** The index as last read or written by this process, valid while index.json still has {@code cacheStamp}. */
+    private Index cache;
+    private Stamp cacheStamp;
+
+    ArtifactStore(Path root) {
+        this.root = root;
+        this.objects = root.resolve("objects");
+        this.indexFile = root.resolve("index.json");
+        this.lockFile = root.resolve(".lock");
+    }
+
+    /** Store at -Dhfd.store, else the per-user cache dir (LOCALAPPDATA / Library/Caches / XDG). */
+    static ArtifactStore shared() {
+        Path want = defaultRoot();
+        ArtifactStore s = shared;
+        if (s == null || !s.root.equals(want)) {
+            synchronized (ArtifactStore.class) {
+                if (shared == null || !shared.root.equals(want)) shared = new ArtifactStore(want);
+                s = shared;
+            }
+        }
+        return s;
+    }
+
+    static Path defaultRoot() {
+        String override = System.getProperty("hfd.store");
+        if (override != null && !override.isBlank()) return Paths.get(override);
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        String home = System.getProperty("user.home");
+        if (os.contains("win")) {
+            String local = System.getenv("LOCALAPPDATA");
+            return (local != null ? Paths.get(local) : Paths.get(home, "AppData", "Local")).resolve("HFD").resolve("store");
+        }
+        if (os.contains("mac")) return Paths.get(home, "Library", "Caches", "HFD", "store");
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        return (xdg != null && !xdg.isBlank() ? Paths.get(xdg) : Paths.get(home, ".cache")).resolve("hfd").resolve("store");
+    }
+
+    Path root() { return root; }
+
+    // ----------- Lookup / ingest ------------
+
+    /**
+     * Path of an intact object for {@code sha512}, or null (object missing, unindexed, or touched
+     * since ingest). Only an indexed object that changed is dropped; an unindexed file is left to
+     * {@link #gc} (it ages out there), it may be another process's orphan or a crashed ingest.
+     */
+    Path find(String sha512) throws IOException {
+        if (sha512 == null || sha512.isBlank()) return null;
+        Path obj = objectPath(sha512);
+        Meta known = meta(key(sha512));
+        if (known == null || !Files.isRegularFile(obj)) return null;
+        if (matches(obj, known)) return obj; // the common case: no lock, no index write
+
+        return withIndex(idx -> { // re-check against the current index before dropping it
+            Meta m = idx.objects.get(key(sha512));
+            if (m == null || !Files.isRegularFile(obj)) return null;
+            if (!matches(obj, m)) { // modified through a link: don't trust it
+                idx.objects.remove(key(sha512));
+                idx.changed();
+                Files.deleteIfExists(obj);
+                return null;
+            }
+            return obj;
+        });
+    }
+
+    /**
+     * Move an already-verified file into the store (or drop it if the object exists). The move
+     * and the index entry happen under one index lock, so no {@link #find} ever sees the object
+     * without its entry.
+     */
+    Path ingest(Path verified, String sha512) throws IOException {
+        Path obj = objectPath(sha512);
+        Files.createDirectories(obj.getParent());
+        return withIndex(idx -> {
+            Meta old = idx.objects.get(key(sha512));
+            if (old != null && Files.isRegularFile(obj) && matches(obj, old)) {
+                Files.deleteIfExists(verified);
+            } else {
+                ModFetcher.moveIntoPlace(verified, obj);
+            }
+            BasicFileAttributes a = Files.readAttributes(obj, BasicFileAttributes.class);
+            Set<String> refs = old != null ? old.refs() : new TreeSet<>();
+            idx.objects.put(key(sha512), new Meta(a.size(), a.lastModifiedTime().toMillis(), System.currentTimeMillis(), refs));
+            idx.changed();
+            return obj;
+        });
+    }
+
+    /** Stream into the store, hashing on the way; returns the object path. */
+    Path ingest(InputStream in) throws IOException {
+        Files.createDirectories(objects);
+        Path tmp = Files.createTempFile(objects, "in-", ".tmp");
+        try {
+            MessageDigest md = sha512();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING), md)) {
+                in.transferTo(out);
+            }
+            return ingest(tmp, HexFormat.of().formatHex(md.digest()));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Re-openable payload source, so a failed store write can fall back to a plain copy. */
+    interface Source {
+        InputStream open() throws IOException;
+        /** The store object already holding these bytes, if any (skips re-ingesting). */
+        default Path stored() throws IOException { return null; }
+    }
+
+    /** Put {@code src} at {@code dest} through the store; plain copy if the store is unusable. */
+    static long placeFrom(Source src, Path dest) throws IOException {
+        try {
+            ArtifactStore store = shared();
+            Path obj = src.stored();
+            if (obj == null) {
+                try (InputStream in = src.open()) { obj = store.ingest(in); }
+            }
+            store.place(obj.getFileName().toString(), dest);
+            return Files.size(dest);
+        } catch (IOException storeFailed) {
+            try (InputStream in = src.open()) {
+                return Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    // ----------- Placement ------------
+
+    /** How {@link #place} materialised the file. */
+    enum Placement { HARDLINK, REFLINK, COPY }
+
+    /** Atomically put object {@code sha512} at {@code dest}: hard link, else reflink, else copy. */
+    Placement place(String sha512, Path dest) throws IOException {
+        Path obj = objectPath(sha512);
+        Files.createDirectories(dest.getParent());
+        Path tmp = dest.resolveSibling(".hfd-link-" + UUID.randomUUID() + ".tmp");
+        Placement how;
+        try {
+            how = link(obj, tmp);
+            ModFetcher.moveIntoPlace(tmp, dest);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        String ref = dest.toAbsolutePath().normalize().toString();
+        if (needsRecording(key(sha512), ref)) {
+            withIndex(idx -> {
+                Meta m = idx.objects.get(key(sha512));
+                if (m != null) {
+                    m.refs().add(ref);
+                    idx.objects.put(key(sha512), new Meta(m.size(), m.mtime(), System.currentTimeMillis(), m.refs()));
+                    idx.changed();
+                }
+                return null;
+            });
+        }
+        return how;
+    }
+
+    private static Placement link(Path obj, Path tmp) throws IOException {
+        try {
+            Files.createLink(tmp, obj);
+            return Placement.HARDLINK;
+        } catch (IOException | UnsupportedOperationException e) {
+            // different volume or no hard links (FAT/exFAT, some network shares)
+        }
+        if (reflink(obj, tmp)) return Placement.REFLINK;
+        Files.copy(obj, tmp, StandardCopyOption.REPLACE_EXISTING);
+        return Placement.COPY;
+    }
+
+    /** Copy-on-write clone via cp (Linux btrfs/xfs: --reflink=always, macOS APFS: -c). */
+    private static boolean reflink(Path src, Path dst) {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        List<String> cmd;
+        if (os.contains("linux")) cmd = List.of("cp", "--reflink=always", src.toString(), dst.toString());
+        else if (os.contains("mac")) cmd = List.of("cp", "-c", src.toString(), dst.toString());
+        else return false;
+        try {
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (!p.waitFor(10, TimeUnit.SECONDS)) { p.destroyForcibly(); return false; }
+            return p.exitValue() == 0 && Files.isRegularFile(dst);
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ----------- GC ------------
+
+    /**
+     * Delete objects none of whose recorded placements still hold the same content, once unused
+     * for {@code grace}; also sweeps orphan objects and stale temp files. Deleting an object never
+     * breaks a placed file (hard links keep the data alive; copies are independent).
+     */
+    int gc(Duration grace) throws IOException {
+        long cutoff = System.currentTimeMillis() - grace.toMillis();
+        return withIndex(idx -> {
+            int removed = 0;
+            for (Iterator<Map.Entry<String, Meta>> it = idx.objects.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Meta> e = it.next();
+                Path obj = objectPath(e.getKey());
+                Meta m = e.getValue();
+                if (m.refs().removeIf(r -> !isLiveRef(Paths.get(r), obj, m))) idx.changed();
+                if (m.refs().isEmpty() && m.lastUsed() < cutoff) {
+                    Files.deleteIfExists(obj);
+                    it.remove();
+                    idx.changed();
+                    removed++;
+                }
+            }
+            if (Files.isDirectory(objects)) {
+                try (var walk = Files.walk(objects)) {
+                    for (Path p : (Iterable<Path>) walk.filter(Files::isRegularFile)::iterator) {
+                        String name = p.getFileName().toString();
+                        boolean stray = name.endsWith(".tmp") || !idx.objects.containsKey(name);
+                        if (stray && Files.getLastModifiedTime(p).toMillis() < cutoff) {
+                            Files.deleteIfExists(p);
+                            removed++;
+                        }
+                    }
+                }
+            }
+            return removed;
+        });
+    }
+
+    private static boolean isLiveRef(Path ref, Path obj, Meta m) {
+        try {
+            if (!Files.isRegularFile(ref)) return false;
+            if (Files.exists(obj) && Files.isSameFile(ref, obj)) return true;
+            return Files.size(ref) == m.size(); // copy/reflink: same size is good enough to keep it
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // ----------- Index (cached reads, locked read-modify-write) ------------
+
+    /** The index as read under the lock; ops call {@link #changed()} when it must be written back. */
+    private static final class Index {
+        final Map<String, Meta> objects = new HashMap<>();
+        private boolean dirty;
+        void changed() { dirty = true; }
+    }
+
+    /** Identity of one version of index.json: every write is a new file moved into place. */
+    private record Stamp(long size, FileTime mtime, Object fileKey) {}
+
+    private interface IndexOp<T> { T apply(Index idx) throws IOException; }
+
+    /** Entry for {@code key} in the current index, from memory unless another process wrote it since. */
+    private synchronized Meta meta(String key) {
+        return current().objects.get(key);
+    }
+
+    /** False if {@code ref} is already recorded for {@code key} recently enough (or {@code key} is unknown). */
+    private synchronized boolean needsRecording(String key, String ref) {
+        Meta m = current().objects.get(key);
+        return m != null && (!m.refs().contains(ref) || System.currentTimeMillis() - m.lastUsed() > TOUCH_INTERVAL_MS);
+    }
+
+    private synchronized <T> T withIndex(IndexOp<T> op) throws IOException {
+        Files.createDirectories(root);
+        try (FileChannel ch = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = ch.lock(); // other installer processes
+            try {
+                Index idx = current();
+                idx.dirty = false;
+                T result = op.apply(idx);
+                if (idx.dirty) {
+                    Path tmp = Files.createTempFile(root, "index-", ".tmp");
+                    try {
+                        Main.JSON.writeValue(tmp.toFile(), toJson(idx));
+                        ModFetcher.moveIntoPlace(tmp, indexFile);
+                    } finally {
+                        Files.deleteIfExists(tmp);
+                    }
+                    cacheStamp = stamp();
+                }
+                return result;
+            } catch (IOException | RuntimeException e) {
+                cache = null; // an op may have stopped half way: re-read next time
+                throw e;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /** The cached index, re-read first if index.json changed (or appeared, or vanished) since. */
+    private Index current() {
+        Stamp now = stamp(); // before reading: a write racing the read just means one more read later
+        if (cache == null || !Objects.equals(now, cacheStamp)) {
+            cache = readIndex();
+            cacheStamp = now;
+        }
+        return cache;
+    }
+
+    private Stamp stamp() {
+        try {
+            BasicFileAttributes a = Files.readAttributes(indexFile, BasicFileAttributes.class);
+            return new Stamp(a.size(), a.lastModifiedTime(), a.fileKey());
+        } catch (IOException e) {
+            return null; // no index yet
+        }
+    }
+
+    private Index readIndex() {
+        Index idx = new Index();
+        if (!Files.isRegularFile(indexFile)) return idx;
+        try {
+            JsonNode root = Main.JSON.readTree(indexFile.toFile());
+            for (Iterator<Map.Entry<String, JsonNode>> it = root.path("objects").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> e = it.next();
+                JsonNode n = e.getValue();
+                Set<String> refs = new TreeSet<>();
+                for (JsonNode r : n.path("refs")) refs.add(r.asText());
+                idx.objects.put(e.getKey(), new Meta(n.path("size").asLong(), n.path("mtime").asLong(), n.path("lastUsed").asLong(), refs));
+            }
+        } catch (IOException | RuntimeException e) {
+            idx.objects.clear(); // unreadable index: objects become orphans and age out via gc()
+        }
+        return idx;
+    }
+
+    private static ObjectNode toJson(Index idx) {
+        ObjectNode root = Main.JSON.createObjectNode();
+        root.put("version", 1);
+        ObjectNode objs = root.putObject("objects");
+        new TreeMap<>(idx.objects).forEach((k, m) -> {
+            ObjectNode n = objs.putObject(k);
+            n.put("size", m.size());
+            n.put("mtime", m.mtime());
+            n.put("lastUsed", m.lastUsed());
+            var refs = n.putArray("refs");
+            m.refs().forEach(refs::add);
+        });
+        return root;
+    }
+
+    // ----------- Internals ------------
+
+    private static boolean matches(Path obj, Meta m) throws IOException {
+        BasicFileAttributes a = Files.readAttributes(obj, BasicFileAttributes.class);
+        return a.size() == m.size() && a.lastModifiedTime().toMillis() == m.mtime();
+    }
+
+    private Path objectPath(String sha512) {
+        String k = key(sha512);
+        return objects.resolve(k.substring(0, 2)).resolve(k);
+    }
+
+    private static String key(String sha512) { return sha512.toLowerCase(Locale.ROOT); }
+
+    private static MessageDigest sha512() {
+        try { return MessageDigest.getInstance("SHA-512"); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+    }
+}
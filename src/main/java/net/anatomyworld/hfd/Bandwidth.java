@@ -0,0 +1,111 @@
+package net.anatomyworld.hfd;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide download shaping: one token bucket capped at {@code -Dhfd.maxKbps} (KiB/s; unset or
+ * 0 = unlimited) shared by every transfer, with priority classes. A transfer only takes tokens
+ * while no higher-priority transfer is waiting for them, so metadata requests get through first,
+ * then the jars the install needs, and speculative/optional downloads yield to both.
+ */
+final class Bandwidth {
+
+    /** Highest first. */
+    enum Priority { METADATA, CRITICAL, OPTIONAL }
+
+    private static final int CHUNK = 16 * 1024;   // granularity of a grant (one read)
+
+    private static final Bandwidth SHARED = new Bandwidth(Long.getLong("hfd.maxKbps", 0) * 1024);
+
+    private final long bytesPerSec;                // <= 0: unlimited
+    private final double burst;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition changed = lock.newCondition();
+    private final int[] waiting = new int[Priority.values().length];
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    Bandwidth(long bytesPerSec) {
+        this.bytesPerSec = bytesPerSec;
+        this.burst = Math.max(CHUNK, bytesPerSec / 4.0); // at most ~250 ms worth at once
+        this.tokens = burst;
+    }
+
+    static Bandwidth shared() { return SHARED; }
+
+    boolean limited() { return bytesPerSec > 0; }
+
+    /** Wrap a response body so its reads are paced at {@code priority}. */
+    InputStream throttle(InputStream in, Priority priority) {
+        if (!limited()) return in;
+        return new FilterInputStream(in) {
+            @Override public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                int want = Math.min(len, CHUNK);
+                acquire(priority, want);
+                int n = super.read(b, off, want);
+                if (n < want) refund(want - Math.max(n, 0));
+                return n;
+            }
+        };
+    }
+
+    /** Block until {@code bytes} may be transferred at {@code priority}. */
+    void acquire(Priority priority, int bytes) throws InterruptedIOException {
+        if (!limited()) return;
+        lock.lock();
+        waiting[priority.ordinal()]++;
+        try {
+            while (true) {
+                refill();
+                boolean yield = higherWaiting(priority);
+                if (!yield && tokens >= bytes) {
+                    tokens -= bytes;
+                    return;
+                }
+                long nanos = yield ? TimeUnit.MILLISECONDS.toNanos(20)
+                        : (long) ((bytes - tokens) * 1e9 / bytesPerSec);
+                changed.awaitNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), nanos));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("download cancelled");
+        } finally {
+            waiting[priority.ordinal()]--;
+            changed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    private void refund(int bytes) {
+        if (bytes <= 0) return;
+        lock.lock();
+        try {
+            tokens = Math.min(burst, tokens + bytes);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * bytesPerSec / 1e9);
+        lastRefill = now;
+    }
+
+    private boolean higherWaiting(Priority p) {
+        for (int i = 0; i < p.ordinal(); i++) if (waiting[i] > 0) return true;
+        return false;
+    }
+}
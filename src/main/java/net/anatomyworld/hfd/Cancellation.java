@@ -0,0 +1,76 @@
+package net.anatomyworld.hfd;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cooperative cancellation of one background run (see {@link InstallService}). {@link #cancel()}
+ * marks the run, fires the registered hooks (abort an HTTP exchange, kill a child process, …) and
+ * interrupts the worker. Loops call {@link #check()} between items; code that swallows per-item
+ * errors asks {@link #isCancel(Throwable)} so an abort isn't logged as one more failed download.
+ * The token is bound to the worker thread; elsewhere {@link #current()} is a never-cancelled one.
+ */
+final class Cancellation {
+
+    /** Removes a hook once the operation it guards is over. */
+    interface Hook extends AutoCloseable { @Override void close(); }
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+    private static final Cancellation NONE = new Cancellation();
+
+    private final Set<Runnable> hooks = ConcurrentHashMap.newKeySet();
+    private volatile Thread worker;
+    private volatile boolean cancelled;
+
+    static Cancellation current() {
+        Cancellation c = CURRENT.get();
+        return c != null ? c : NONE;
+    }
+
+    /** Make this the calling thread's token (the worker). */
+    void bind() {
+        worker = Thread.currentThread();
+        CURRENT.set(this);
+        if (cancelled) worker.interrupt(); // cancelled before the worker got going
+    }
+
+    static void unbind() { CURRENT.remove(); }
+
+    boolean isCancelled() { return cancelled; }
+
+    /** Throw if the run was cancelled; call between units of work. */
+    void check() {
+        if (cancelled) throw new CancellationException("cancelled");
+    }
+
+    /** Run {@code action} on cancel (right away if already cancelled) until the returned hook is closed. */
+    Hook onCancel(Runnable action) {
+        if (this == NONE) return () -> {};
+        hooks.add(action);
+        if (cancelled) fire(action);
+        return () -> hooks.remove(action);
+    }
+
+    void cancel() {
+        if (this == NONE || cancelled) return;
+        cancelled = true;
+        for (Runnable r : hooks) fire(r);
+        Thread t = worker;
+        if (t != null) t.interrupt();
+    }
+
+    /** True if {@code t} comes from an abort (of this thread's run, or an interrupt) rather than a real failure. */
+    static boolean isCancel(Throwable t) {
+        return current().isCancelled() || t instanceof InterruptedException || t instanceof ClosedByInterruptException
+                || t instanceof CancellationException
+                || (t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException)); // a timeout is a real failure
+    }
+
+    private static void fire(Runnable r) {
+        try { r.run(); } catch (RuntimeException ignored) {} // best effort: the interrupt still follows
+    }
+}
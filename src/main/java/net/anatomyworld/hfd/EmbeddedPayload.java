@@ -0,0 +1,171 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The mod jars shipped inside the installer: {@code embedded/mods/*.jar(.bin)} in the fat jar,
+ * or project-root {@code mods/*.jar} when running from an IDE. Keeps the jar open until closed.
+ *
+ * <p>The build writes {@code embedded/manifest.json} (path, size, CRC-32, SHA-512 of every payload
+ * entry), so entries are looked up by name instead of walking all of the jar's entries, and
+ * up-to-date checks can compare hashes without reading the entry at all. Jars built without a
+ * manifest fall back to the scan. Entries the build moved into the solid payload
+ * ({@code -PpayloadFormat=xz}) come from {@link SolidPayload} instead.
+ */
+final class EmbeddedPayload implements AutoCloseable {
+
+    static final String MODS_PREFIX = "embedded/mods/";
+    static final String MANIFEST = "embedded/manifest.json";
+
+    /**
+     * One embedded mod; {@code name} is the on-disk .jar name, {@code size}/{@code crc} -1 and {@code sha512} null if unknown.
+     * {@code patches}: {@link JarDelta}s that rebuild it from older versions (upgrades).
+     */
+    record Mod(String name, long size, long crc, String sha512, ArtifactStore.Source source, List<Patch> patches) {}
+
+    /** One manifest line: zip path plus what the build measured. */
+    record Entry(String path, long size, long crc, String sha512, List<Patch> patches) {}
+
+    /** Delta from the version with SHA-512 {@code from}, stored at resource {@code path}. */
+    record Patch(String from, String path, long size) {
+        InputStream open() throws IOException {
+            InputStream in = Main.class.getResourceAsStream("/" + path);
+            if (in == null) throw new FileNotFoundException(path);
+            return in;
+        }
+    }
+
+    private final ZipFile zip;     // null in dev mode
+    private final List<Mod> mods;
+
+    private EmbeddedPayload(ZipFile zip, List<Mod> mods) {
+        this.zip = zip;
+        this.mods = mods;
+    }
+
+    /** Open the payload of {@code selfJar} (null or not a .jar → dev mode). */
+    static EmbeddedPayload open(Path selfJar) throws IOException {
+        if (selfJar == null || !selfJar.toString().toLowerCase(Locale.ROOT).endsWith(".jar")) return openDev(Paths.get("mods"));
+
+        ZipFile zf = new ZipFile(selfJar.toFile());
+        try {
+            ZipEntry me = zf.getEntry(MANIFEST);
+            List<Mod> mods;
+            if (me != null) {
+                try (InputStream in = zf.getInputStream(me)) {
+                    mods = fromManifest(zf, readManifest(in));
+                }
+            } else {
+                mods = scan(zf);
+            }
+            return new EmbeddedPayload(zf, mods);
+        } catch (IOException | RuntimeException e) {
+            zf.close();
+            throw e;
+        }
+    }
+
+    /** Named lookups only; entries listed in the manifest but missing from the jar are an error. */
+    private static List<Mod> fromManifest(ZipFile zf, Map<String, Entry> manifest) throws IOException {
+        SolidPayload solid = SolidPayload.get();
+        List<Mod> mods = new ArrayList<>();
+        for (Entry m : manifest.values()) {
+            if (!m.path().startsWith(MODS_PREFIX)) continue;
+            ZipEntry e = zf.getEntry(m.path());
+            ArtifactStore.Source src;
+            if (e != null) {
+                src = zipSource(zf, e, m.sha512());
+            } else if (solid != null && solid.contains(m.path())) {
+                src = solidSource(solid, m.path());
+            } else {
+                throw new IOException("Payload manifest lists " + m.path() + " but the jar does not contain it");
+            }
+            mods.add(new Mod(diskName(m.path()), m.size(), m.crc(), m.sha512(), src, m.patches()));
+        }
+        return mods;
+    }
+
+    /** Old jars without a manifest: walk the central directory. */
+    private static List<Mod> scan(ZipFile zf) {
+        List<Mod> mods = new ArrayList<>();
+        Enumeration<? extends ZipEntry> it = zf.entries();
+        while (it.hasMoreElements()) {
+            ZipEntry e = it.nextElement();
+            if (e.isDirectory() || !e.getName().startsWith(MODS_PREFIX)) continue;
+            String name = e.getName().substring(MODS_PREFIX.length());
+            if (!(name.endsWith(".jar") || name.endsWith(".jar.bin"))) continue;
+            mods.add(new Mod(diskName(e.getName()), e.getSize(), e.getCrc(), null, () -> zf.getInputStream(e), List.of()));
+        }
+        return mods;
+    }
+
+    /** Plain zip entry; if the store already holds its hash (earlier install, prefetch) it is linked from there. */
+    private static ArtifactStore.Source zipSource(ZipFile zf, ZipEntry e, String sha512) {
+        return new ArtifactStore.Source() {
+            @Override public InputStream open() throws IOException { return zf.getInputStream(e); }
+            @Override public Path stored() throws IOException { return ArtifactStore.shared().find(sha512); }
+        };
+    }
+
+    /** Entry packed into the solid payload: unpacked into the store on first use, then linked from there. */
+    static ArtifactStore.Source solidSource(SolidPayload solid, String path) {
+        return new ArtifactStore.Source() {
+            @Override public InputStream open() throws IOException { return Files.newInputStream(solid.object(path)); }
+            @Override public Path stored() throws IOException { return solid.object(path); }
+        };
+    }
+
+    private static EmbeddedPayload openDev(Path devMods) throws IOException {
+        List<Mod> mods = new ArrayList<>();
+        if (Files.isDirectory(devMods)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(devMods, "*.jar")) {
+                for (Path p : ds) mods.add(new Mod(p.getFileName().toString(), Files.size(p), -1, null, () -> Files.newInputStream(p), List.of()));
+            }
+        }
+        return new EmbeddedPayload(null, mods);
+    }
+
+    // ----------- Manifest ------------
+
+    /** Parse a payload manifest, keyed by zip path. */
+    static Map<String, Entry> readManifest(InputStream in) throws IOException {
+        Map<String, Entry> out = new LinkedHashMap<>();
+        for (JsonNode n : Main.JSON.readTree(in).path("entries")) {
+            List<Patch> patches = new ArrayList<>();
+            for (JsonNode p : n.path("patches")) patches.add(new Patch(p.path("from").asText(), p.path("path").asText(), p.path("size").asLong(-1)));
+            Entry e = new Entry(n.path("path").asText(), n.path("size").asLong(-1),
+                    n.path("crc").asLong(-1), n.path("sha512").asText(null), List.copyOf(patches));
+            out.put(e.path(), e);
+        }
+        return out;
+    }
+
+    /** Manifest entry for a payload path via the class loader (no jar open needed); null if unknown. */
+    static Entry manifestEntry(String path) {
+        try (InputStream in = Main.class.getResourceAsStream("/" + MANIFEST)) {
+            return in == null ? null : readManifest(in).get(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String diskName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1).replaceFirst("\\.jar\\.bin$", ".jar");
+    }
+
+    boolean isDev() { return zip == null; }
+
+    List<Mod> mods() { return mods; }
+
+    @Override public void close() throws IOException {
+        if (zip != null) zip.close();
+    }
+}
@@ -0,0 +1,85 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Build-time step behind {@code gradle bundleExternalMods}: resolves mods.fetch.json against
+ * Modrinth, downloads + verifies every jar and writes a manifest, so processResources can embed
+ * them under {@code embedded/external/}. At install time {@link ModFetcher} then places those
+ * jars without touching the network (unless a refresh is asked for or the config changed).
+ * Downloads go through an artifact store of the build's own ({@code -Dhfd.store}, else
+ * {@code <outDir>-store}), never the machine-wide one the installer uses.
+ *
+ * <p>Usage: {@code ExternalBundler <mods.fetch.json> <outDir> [mcVersion]}
+ */
+final class ExternalBundler {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: ExternalBundler <mods.fetch.json> <outDir> [mcVersion]");
+            System.exit(64);
+        }
+        Path configFile = Paths.get(args[0]);
+        Path outDir = Paths.get(args[1]);
+        String mc = args.length > 2 ? args[2] : Main.TARGET_MC_VERSION;
+        Installer.Log log = System.out::println;
+        if (System.getProperty("hfd.store") == null) {
+            System.setProperty("hfd.store", outDir.toAbsolutePath().resolveSibling(outDir.getFileName() + "-store").toString());
+        }
+
+        // always resolve online here: we are the ones producing the bundle
+        System.setProperty("hfd.refreshMods", "true");
+
+        JsonNode config = Main.JSON.readTree(configFile.toFile());
+        Path modsDir = outDir.resolve("mods");
+        clean(modsDir);
+
+        ModFetcher fetcher = new ModFetcher();
+        List<ModFetcher.Resolved> resolved = fetcher.resolveAll(mc, config, log);
+
+        ObjectNode manifest = Main.JSON.createObjectNode();
+        manifest.put("version", 1);
+        manifest.put("mc", mc);
+        manifest.put("configSha256", ModFetcher.configFingerprint(config));
+        manifest.put("generated", Instant.now().toString());
+        ArrayNode mods = manifest.putArray("mods");
+
+        int failed = 0;
+        for (ModFetcher.Resolved r : resolved) {
+            try {
+                Path jar = fetcher.fetchResolved(r, modsDir, log);
+                String sha512 = ModIndex.hash(jar)[1]; // re-hash: some files come without a Modrinth hash
+                ObjectNode n = mods.addObject();
+                n.put("name", r.displayName());
+                n.put("filename", jar.getFileName().toString());
+                n.put("sha512", sha512);
+                n.put("size", Files.size(jar));
+                n.put("url", r.file().url());
+                log.line("Bundled " + r.displayName() + " → " + jar.getFileName());
+            } catch (Exception e) {
+                failed++;
+                log.line("Not bundled (will be fetched at install time): " + r.displayName() + " — " + e.getMessage());
+            }
+        }
+
+        Files.createDirectories(outDir);
+        Main.JSON.writerWithDefaultPrettyPrinter().writeValue(outDir.resolve("manifest.json").toFile(), manifest);
+        log.line("Bundled " + mods.size() + " external mod(s)" + (failed > 0 ? ", " + failed + " left for install time" : "") + ".");
+    }
+
+    /** Drop jars from a previous bundle so a removed/updated rule doesn't leave stale files behind. */
+    private static void clean(Path modsDir) throws IOException {
+        if (!Files.isDirectory(modsDir)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(modsDir)) {
+            for (Path p : ds) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(modsDir.getParent().resolve(".hfd").resolve("mods-index.json"));
+    }
+}
@@ -0,0 +1,147 @@
+package net.anatomyworld.hfd;
+
+import jdk.jfr.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for the install: phases, HTTP requests, file extraction, hash
+ * checks and launcher file writes, all under the "HFD Installer" category so a recording opens
+ * in JMC next to the JDK's GC/thread/IO data. The events are always defined and cost next to
+ * nothing unless a recording is running; {@code --jfr <file>} (or {@code -Dhfd.jfr=<file>})
+ * makes {@link #record} start one for the duration of an install.
+ */
+final class Flight {
+
+    private Flight() {}
+
+    private static final String CATEGORY = "HFD Installer";
+
+    @Name("hfd.Phase") @Label("Install Phase") @Category(CATEGORY)
+    @Description("One step of Installer.runInstall")
+    static final class Phase extends Event {
+        @Label("Phase") String phase;
+        @Label("Succeeded") boolean ok;
+    }
+
+    @Name("hfd.Http") @Label("HTTP Request") @Category(CATEGORY)
+    @Description("One GET issued by ModFetcher (API metadata or a download)")
+    static final class Http extends Event {
+        @Label("Host") String host;
+        @Label("URL") String url;
+        @Label("Priority") String priority;
+        @Label("Attempt") int attempt;
+        @Label("Status") int status;
+        @Label("Bytes") @DataAmount long bytes;
+        @Label("Error") String error;
+    }
+
+    @Name("hfd.Extract") @Label("File Extraction") @Category(CATEGORY)
+    @Description("A file copied out of the installer jar, the solid payload or the artifact store")
+    static final class Extract extends Event {
+        @Label("File") String file;
+        @Label("Source") String source;
+        @Label("Bytes") @DataAmount long bytes;
+    }
+
+    @Name("hfd.Verify") @Label("Hash Verification") @Category(CATEGORY)
+    @Description("SHA-512 check of a downloaded, extracted or unpacked file")
+    static final class Verify extends Event {
+        @Label("File") String file;
+        @Label("Bytes") @DataAmount long bytes;
+        @Label("Matched") boolean ok;
+    }
+
+    @Name("hfd.ConfigWrite") @Label("Launcher File Write") @Category(CATEGORY)
+    @Description("launcher_profiles.json, servers.dat (NBT), options.txt or the child version JSON")
+    static final class ConfigWrite extends Event {
+        @Label("Kind") String kind;
+        @Label("File") String file;
+        @Label("Bytes") @DataAmount long bytes;
+    }
+
+    // ----------- Commit helpers (begin() is called by the instrumented code) ------------
+
+    static void commit(Extract e, Path file, String source) {
+        if (!e.shouldCommit()) return;
+        e.file = String.valueOf(file);
+        e.source = source;
+        e.bytes = sizeOf(file);
+        e.commit();
+    }
+
+    static void commit(Verify e, Path file, boolean ok) {
+        if (!e.shouldCommit()) return;
+        e.file = String.valueOf(file);
+        e.bytes = sizeOf(file);
+        e.ok = ok;
+        e.commit();
+    }
+
+    static void commit(ConfigWrite e, String kind, Path file) {
+        if (!e.shouldCommit()) return;
+        e.kind = kind;
+        e.file = String.valueOf(file);
+        e.bytes = sizeOf(file);
+        e.commit();
+    }
+
+    private static long sizeOf(Path p) {
+        try { return p != null && Files.isRegularFile(p) ? Files.size(p) : -1; }
+        catch (IOException e) { return -1; }
+    }
+
+    // ----------- Recording ------------
+
+    /** A running recording; closing it dumps to the file and stops. */
+    static final class Session implements AutoCloseable {
+        private final Recording rec;
+        private final Path file;
+        private final Installer.Log log;
+
+        private Session(Recording rec, Path file, Installer.Log log) {
+            this.rec = rec;
+            this.file = file;
+            this.log = log;
+        }
+
+        @Override public void close() {
+            if (rec == null) return;
+            try {
+                rec.dump(file);
+                log.line("Flight recording: " + file);
+            } catch (IOException e) {
+                log.line("Could not write flight recording: " + e.getMessage());
+            } finally {
+                rec.close();
+            }
+        }
+    }
+
+    /** Start a recording if {@code hfd.jfr} names a file (JDK "profile" settings plus our events); no-op otherwise. */
+    static Session record(Installer.Log log) {
+        String target = System.getProperty("hfd.jfr");
+        if (target == null || target.isBlank()) return new Session(null, null, log);
+        try {
+            Path file = Path.of(target).toAbsolutePath();
+            Files.createDirectories(file.getParent());
+            Recording rec = new Recording(Configuration.getConfiguration("profile"));
+            rec.setName("hfd-install");
+            rec.setToDisk(true);
+            for (Class<? extends Event> c : List.of(Phase.class, Http.class, Extract.class, Verify.class, ConfigWrite.class)) {
+                rec.enable(c).withThreshold(Duration.ZERO).withStackTrace();
+            }
+            rec.start();
+            log.line("Flight recording started (" + file.getFileName() + ")");
+            return new Session(rec, file, log);
+        } catch (IOException | ParseException | RuntimeException e) {
+            log.line("Could not start flight recording: " + e.getMessage());
+            return new Session(null, null, log);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Per-host download health (latency, throughput, failure rate) measured on every fetch and kept
+ * in {@code host-stats.json} next to the artifact store. Used to try equivalent (same SHA-512)
+ * sources fastest-first. Samples are smoothed (EWMA), and old figures decay back towards a
+ * neutral prior with a half-life of {@link #HALF_LIFE_MS}, so a host that was slow or down gets
+ * another chance later. Thread-safe; one instance per process ({@link #shared()}).
+ */
+final class HostStats {
+
+    /** Smoothed figures for one host; {@code updated} is epoch millis of the last sample. */
+    record Stat(double latencyMs, double bytesPerSec, double failRate, long updated) {}
+
+    static final long HALF_LIFE_MS = 3L * 24 * 60 * 60 * 1000;
+    private static final double ALPHA = 0.3;                       // weight of a new sample
+    private static final Stat PRIOR = new Stat(300, 2_000_000, 0.05, 0);
+    private static final double REF_BYTES = 4 * 1024 * 1024;        // "typical mod jar" for scoring
+
+    private static HostStats shared;
+
+    private final Path file;
+    private final Map<String, Stat> hosts = new HashMap<>();
+    private boolean dirty;
+
+    HostStats(Path file) {
+        this.file = file;
+        load();
+    }
+
+    static synchronized HostStats shared() {
+        if (shared == null) shared = new HostStats(ArtifactStore.defaultRoot().resolve("host-stats.json"));
+        return shared;
+    }
+
+    // ----------- Samples ------------
+
+    /** A completed request: time to first byte, body size and total time. */
+    synchronized void success(String url, long firstByteNanos, long bytes, long totalNanos) {
+        String host = host(url);
+        if (host == null) return;
+        Stat s = current(host, System.currentTimeMillis());
+        double lat = firstByteNanos / 1e6;
+        double transferS = Math.max(1e-3, (totalNanos - firstByteNanos) / 1e9);
+        // tiny bodies (API JSON) say little about bandwidth: only latency counts for them
+        double bps = bytes >= 256 * 1024 ? bytes / transferS : s.bytesPerSec();
+        put(host, new Stat(ewma(s.latencyMs(), lat), ewma(s.bytesPerSec(), bps), ewma(s.failRate(), 0), System.currentTimeMillis()));
+    }
+
+    /** A failed request (I/O error, bad status, hash mismatch). */
+    synchronized void failure(String url) {
+        String host = host(url);
+        if (host == null) return;
+        Stat s = current(host, System.currentTimeMillis());
+        put(host, new Stat(s.latencyMs(), s.bytesPerSec(), ewma(s.failRate(), 1), System.currentTimeMillis()));
+    }
+
+    // ----------- Ranking ------------
+
+    /** Expected seconds to fetch a typical file from {@code url}'s host, inflated by its failure rate. */
+    synchronized double score(String url) {
+        String host = host(url);
+        Stat s = host == null ? PRIOR : current(host, System.currentTimeMillis());
+        double seconds = s.latencyMs() / 1000 + REF_BYTES / Math.max(1, s.bytesPerSec());
+        return seconds / Math.max(0.05, 1 - s.failRate());
+    }
+
+    /** {@code urls} best-first (stable: ties keep the configured order). */
+    List<String> rank(List<String> urls) {
+        if (urls.size() < 2) return urls;
+        Map<String, Double> scores = new HashMap<>();
+        for (String u : urls) scores.put(u, score(u));
+        List<String> out = new ArrayList<>(urls);
+        out.sort(Comparator.comparingDouble(scores::get));
+        return out;
+    }
+
+    // ----------- Persistence ------------
+
+    synchronized void save() {
+        if (!dirty) return;
+        ObjectNode root = Main.JSON.createObjectNode();
+        root.put("version", 1);
+        ObjectNode hs = root.putObject("hosts");
+        for (var e : hosts.entrySet()) {
+            ObjectNode n = hs.putObject(e.getKey());
+            n.put("latencyMs", e.getValue().latencyMs());
+            n.put("bytesPerSec", e.getValue().bytesPerSec());
+            n.put("failRate", e.getValue().failRate());
+            n.put("updated", e.getValue().updated());
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "host-stats-", ".tmp");
+            try {
+                Main.JSON.writeValue(tmp.toFile(), root);
+                ModFetcher.moveIntoPlace(tmp, file);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            // stats are advisory: losing them only costs ordering quality
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) return;
+        try {
+            JsonNode root = Main.JSON.readTree(file.toFile());
+            root.path("hosts").fields().forEachRemaining(e -> {
+                JsonNode n = e.getValue();
+                hosts.put(e.getKey(), new Stat(n.path("latencyMs").asDouble(PRIOR.latencyMs()),
+                        n.path("bytesPerSec").asDouble(PRIOR.bytesPerSec()),
+                        n.path("failRate").asDouble(PRIOR.failRate()), n.path("updated").asLong()));
+            });
+        } catch (IOException | RuntimeException e) {
+            hosts.clear(); // corrupt: start over
+        }
+    }
+
+    // ----------- Internals ------------
+
+    /** Stored figures decayed towards the prior by age (unknown host = prior). */
+    private Stat current(String host, long now) {
+        Stat s = hosts.get(host);
+        if (s == null) return PRIOR;
+        double w = Math.pow(0.5, Math.max(0, now - s.updated()) / (double) HALF_LIFE_MS);
+        return new Stat(mix(s.latencyMs(), PRIOR.latencyMs(), w), mix(s.bytesPerSec(), PRIOR.bytesPerSec(), w),
+                mix(s.failRate(), PRIOR.failRate(), w), s.updated());
+    }
+
+    private void put(String host, Stat s) {
+        hosts.put(host, s);
+        dirty = true;
+    }
+
+    private static double ewma(double old, double sample) { return old + ALPHA * (sample - old); }
+
+    private static double mix(double v, double prior, double w) { return w * v + (1 - w) * prior; }
+
+    private static String host(String url) {
+        try {
+            String h = URI.create(url).getHost();
+            if (h == null) return null;
+            int port = URI.create(url).getPort();
+            return port < 0 ? h.toLowerCase(Locale.ROOT) : h.toLowerCase(Locale.ROOT) + ":" + port;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
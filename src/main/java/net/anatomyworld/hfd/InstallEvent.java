@@ -0,0 +1,56 @@
+package net.anatomyworld.hfd;
+
+import java.nio.file.Path;
+
+/**
+ * Typed install events, emitted through {@link Installer.Log#event} alongside the text lines.
+ * Emitting is a virtual call on the log; nothing is formatted unless a listener wants it.
+ */
+public sealed interface InstallEvent {
+
+    /** Receives events on the emitting (installer/worker) thread; keep it cheap. */
+    interface Listener { void on(InstallEvent e); }
+
+    /** The phases this run will execute, with how many items (files) each expects; 0 = not itemised. */
+    record Planned(java.util.Map<String, Integer> phases) implements InstallEvent {}
+    record PhaseStarted(String phase) implements InstallEvent {}
+    record PhaseFinished(String phase, long nanos, boolean ok) implements InstallEvent {}
+    /** {@code total} is -1 when unknown; {@code done} is true on the final update for {@code url}. */
+    record DownloadProgress(String url, long bytes, long total, boolean done) implements InstallEvent {}
+    /** {@code source}: "download", "embedded", "cache", … */
+    record FilePlaced(Path file, long bytes, String source) implements InstallEvent {}
+    /** Steps done of {@code total} in a phase that isn't a list of files (the NeoForge child run). */
+    record StepProgress(String phase, int done, int total) implements InstallEvent {}
+    record CacheHit(String key) implements InstallEvent {}
+    record Retry(String what, int attempt, String reason) implements InstallEvent {}
+    record Error(String phase, String message) implements InstallEvent {}
+
+    /** Emits PhaseStarted now and PhaseFinished on close; call {@link Phase#ok()} on success. */
+    static Phase phase(Installer.Log log, String name) {
+        return new Phase(log, name);
+    }
+
+    final class Phase implements AutoCloseable {
+        private final Installer.Log log;
+        private final String name;
+        private final long start = System.nanoTime();
+        private final Flight.Phase jfr = new Flight.Phase();
+        private boolean ok = false;
+
+        private Phase(Installer.Log log, String name) {
+            this.log = log;
+            this.name = name;
+            jfr.begin();
+            log.event(new PhaseStarted(name));
+        }
+
+        public void ok() { ok = true; }
+
+        @Override public void close() {
+            jfr.phase = name;
+            jfr.ok = ok;
+            jfr.commit();
+            log.event(new PhaseFinished(name, System.nanoTime() - start, ok));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.anatomyworld.hfd;
+
+import java.util.Arrays;
+
+/**
+ * Log decorator that fans {@link InstallEvent}s out to listeners and forwards
+ * both lines and events to the wrapped log, so decorators can be stacked.
+ */
+public final class InstallEvents implements Installer.Log {
+
+    private final Installer.Log delegate;
+    private volatile InstallEvent.Listener[] listeners = new InstallEvent.Listener[0];
+
+    public InstallEvents(Installer.Log delegate) { this.delegate = delegate; }
+
+    public synchronized InstallEvents listen(InstallEvent.Listener l) {
+        InstallEvent.Listener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[listeners.length] = l;
+        listeners = next;
+        return this;
+    }
+
+    @Override public void line(String s) { delegate.line(s); }
+
+    @Override public void event(InstallEvent e) {
+        for (InstallEvent.Listener l : listeners) {
+            try { l.on(e); } catch (RuntimeException ignored) {} // a bad listener must not break the install
+        }
+        delegate.event(e);
+    }
+}
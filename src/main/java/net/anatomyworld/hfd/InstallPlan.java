@@ -0,0 +1,66 @@
+package net.anatomyworld.hfd;
+
+import java.util.*;
+
+/**
+ * What an install would change, computed up front from cheap local checks (stats, indexed
+ * hashes, small JSON compares): each {@link Step} that needs to run, with the reasons why.
+ * An empty plan means the pack is already installed and current.
+ */
+final class InstallPlan {
+
+    /** Install steps in the order {@link Installer} applies them. */
+    enum Step { NEOFORGE, CHILD_VERSION, EMBEDDED_MODS, EXTERNAL_MODS, OPTIONS, PROFILES, SERVERS_DAT }
+
+    private final Map<Step, List<String>> reasons = new EnumMap<>(Step.class);
+    private final Map<Step, Integer> items = new EnumMap<>(Step.class);
+    private final String neoId;
+
+    InstallPlan(String neoId) { this.neoId = neoId; }
+
+    /**
+     * Installed NeoForge version found while planning (null if none). When {@link Step#NEOFORGE}
+     * is planned this is some other version, not the one required.
+     */
+    String neoId() { return neoId; }
+
+    void add(Step step, String reason) {
+        reasons.computeIfAbsent(step, k -> new ArrayList<>()).add(reason);
+    }
+
+    void addAll(Step step, Collection<String> why) {
+        for (String r : why) add(step, r);
+    }
+
+    /** How many files {@code step} goes through when it runs (for progress; up-to-date ones included). */
+    void expect(Step step, int count) { items.put(step, count); }
+
+    boolean needs(Step step) { return reasons.containsKey(step); }
+
+    /** Phase name used in events/logs for {@code step}. */
+    static String phaseName(Step step) { return step.name().toLowerCase(Locale.ROOT).replace('_', '-'); }
+
+    /** Steps to run → expected item count, as a {@link InstallEvent.Planned} event. */
+    InstallEvent.Planned toEvent() {
+        Map<String, Integer> phases = new LinkedHashMap<>();
+        for (Step s : reasons.keySet()) phases.put(phaseName(s), items.getOrDefault(s, 0));
+        return new InstallEvent.Planned(phases);
+    }
+
+    boolean isEmpty() { return reasons.isEmpty(); }
+
+    /** Print the plan: one line per step, at most a few reasons each. */
+    void log(Installer.Log log) {
+        if (isEmpty()) {
+            log.line("Plan: nothing to do, everything is up to date.");
+            return;
+        }
+        log.line("Plan: " + reasons.size() + " step(s) to apply");
+        for (var e : reasons.entrySet()) {
+            List<String> why = e.getValue();
+            String shown = String.join("; ", why.subList(0, Math.min(3, why.size())));
+            if (why.size() > 3) shown += "; +" + (why.size() - 3) + " more";
+            log.line("  " + phaseName(e.getKey()) + ": " + shown);
+        }
+    }
+}
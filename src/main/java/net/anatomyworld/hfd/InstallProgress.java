@@ -0,0 +1,122 @@
+package net.anatomyworld.hfd;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Progress model fed by {@link InstallEvent}s: each planned phase has a weight (roughly its share
+ * of a typical install), itemised phases advance per file (plus partial bytes of in-flight
+ * downloads), and the NeoForge run follows the steps its child process reports, or its expected
+ * duration while it has reported none.
+ * {@link #snapshot()} is cheap and meant to be sampled a few times per second by the UI;
+ * the listener side only does O(1) bookkeeping.
+ */
+final class InstallProgress implements InstallEvent.Listener {
+
+    /** {@code etaSeconds} is -1 while unknown. */
+    record Snapshot(String phase, double fraction, double bytesPerSec, long etaSeconds) {}
+
+    private static final Map<String, Double> WEIGHTS = Map.of(
+            "plan", 1.0,
+            "neoforge", 30.0,
+            "child-version", 0.5,
+            "embedded-mods", 15.0,
+            "external-mods", 45.0,
+            "options", 0.5,
+            "profiles", 1.0,
+            "servers-dat", 0.5);
+
+    private static final double NEOFORGE_EXPECTED_S = 60;  // typical first-time NeoForge install
+    private static final double SMOOTHING = 0.25;          // EWMA weight per snapshot
+
+    private double totalWeight = WEIGHTS.get("plan");
+    private Map<String, Integer> planned = Map.of();
+    private double doneWeight;
+    private String phase = "plan";
+    private long phaseStart = System.nanoTime();
+    private final Set<String> items = new HashSet<>();
+    private final Map<String, long[]> inFlight = new HashMap<>(); // url → {bytes, total}
+    private long bytes;
+    private int stepsDone, stepsTotal;
+
+    // snapshot-side smoothing
+    private long lastSampleNanos = System.nanoTime();
+    private long lastBytes;
+    private double lastFraction;
+    private double rateBytes;
+    private double rateFraction;
+
+    @Override public synchronized void on(InstallEvent e) {
+        if (e instanceof InstallEvent.Planned p) {
+            planned = p.phases();
+            totalWeight = WEIGHTS.get("plan");
+            for (String ph : planned.keySet()) totalWeight += WEIGHTS.getOrDefault(ph, 1.0);
+        } else if (e instanceof InstallEvent.PhaseStarted s) {
+            phase = s.phase();
+            phaseStart = System.nanoTime();
+            items.clear();
+            inFlight.clear();
+            stepsDone = stepsTotal = 0;
+        } else if (e instanceof InstallEvent.PhaseFinished f) {
+            if (f.phase().equals("plan") || planned.containsKey(f.phase())) doneWeight += WEIGHTS.getOrDefault(f.phase(), 1.0);
+            phase = null;
+        } else if (e instanceof InstallEvent.DownloadProgress d) {
+            long[] seen = inFlight.computeIfAbsent(d.url(), k -> new long[2]);
+            bytes += Math.max(0, d.bytes() - seen[0]);
+            seen[0] = d.bytes();
+            seen[1] = d.total();
+            if (d.done()) inFlight.remove(d.url());
+        } else if (e instanceof InstallEvent.FilePlaced f) {
+            items.add(f.file().getFileName().toString());
+            if (!"download".equals(f.source())) bytes += f.bytes(); // downloads were counted as they streamed
+        } else if (e instanceof InstallEvent.StepProgress s) {
+            if (s.phase().equals(phase)) {
+                stepsDone = s.done();
+                stepsTotal = s.total();
+            }
+        } else if (e instanceof InstallEvent.CacheHit c) {
+            items.add(c.key());
+        }
+    }
+
+    /** Current state; call from one thread (the UI timer), a few times per second at most. */
+    synchronized Snapshot snapshot() {
+        double fraction = Math.min(1, (doneWeight + currentWeight() * phaseFraction()) / totalWeight);
+        long now = System.nanoTime();
+        double dt = (now - lastSampleNanos) / 1e9;
+        if (dt >= 0.05) {
+            rateBytes += SMOOTHING * ((bytes - lastBytes) / dt - rateBytes);
+            rateFraction += SMOOTHING * (Math.max(0, fraction - lastFraction) / dt - rateFraction);
+            lastSampleNanos = now;
+            lastBytes = bytes;
+            lastFraction = fraction;
+        }
+        long eta = rateFraction > 1e-4 && fraction > 0.02 ? Math.round((1 - fraction) / rateFraction) : -1;
+        return new Snapshot(phase, fraction, rateBytes, eta);
+    }
+
+    private double currentWeight() {
+        if (phase == null) return 0;
+        if (!phase.equals("plan") && !planned.containsKey(phase)) return 0;
+        return WEIGHTS.getOrDefault(phase, 1.0);
+    }
+
+    /** 0..1 within the running phase (never quite 1 until it finishes). */
+    private double phaseFraction() {
+        if (phase == null) return 0;
+        int expected = planned.getOrDefault(phase, 0);
+        if (expected > 0) {
+            double partial = 0;
+            for (long[] f : inFlight.values()) if (f[1] > 0) partial += Math.min(1, f[0] / (double) f[1]);
+            return Math.min(0.99, (items.size() + partial) / expected);
+        }
+        if (stepsTotal > 0) return Math.min(0.99, stepsDone / (double) stepsTotal);
+        if (phase.equals("neoforge")) {
+            double s = (System.nanoTime() - phaseStart) / 1e9;
+            return Math.min(0.95, 1 - Math.exp(-s / NEOFORGE_EXPECTED_S));
+        }
+        return 0;
+    }
+}
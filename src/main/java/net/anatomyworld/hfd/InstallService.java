@@ -0,0 +1,65 @@
+package net.anatomyworld.hfd;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs one install or repair at a time on a worker thread, with {@link Cancellation} bound to it.
+ * The returned future fails with {@link CancellationException} when the run was aborted.
+ * {@link #abort} cancels and waits a bounded time for the worker to unwind (in-flight HTTP
+ * exchanges aborted, child process killed, temp files deleted, launcher files rolled back), so
+ * closing the window doesn't cut a write in half.
+ */
+final class InstallService {
+
+    interface Task<T> { T run() throws Exception; }
+
+    private Thread worker;
+    private Cancellation cancel;
+
+    synchronized boolean busy() { return worker != null && worker.isAlive(); }
+
+    /** Start {@code task} on a thread called {@code name}; fails if a run is still going. */
+    synchronized <T> CompletableFuture<T> submit(String name, Task<T> task) {
+        if (busy()) throw new IllegalStateException("A run is already in progress");
+        Cancellation c = new Cancellation();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            c.bind();
+            try {
+                result.complete(task.run());
+            } catch (Throwable e) {
+                result.completeExceptionally(c.isCancelled() ? new CancellationException("cancelled") : e);
+            } finally {
+                Cancellation.unbind();
+                Thread.interrupted(); // don't leak the abort's interrupt into whatever reuses the thread state
+            }
+        }, name);
+        worker = t;
+        cancel = c;
+        t.start();
+        return result;
+    }
+
+    /** Ask the current run to stop; returns at once. */
+    synchronized void cancel() {
+        if (cancel != null) cancel.cancel();
+    }
+
+    /** Cancel and wait at most {@code limit} for the worker to finish unwinding; true if it did (or nothing ran). */
+    boolean abort(Duration limit) {
+        Thread t;
+        synchronized (this) {
+            t = worker;
+            if (cancel != null) cancel.cancel();
+        }
+        if (t == null) return true;
+        try {
+            t.join(Math.max(1, limit.toMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !t.isAlive();
+    }
+}
@@ -3,67 +3,274 @@ package net.anatomyworld.hfd;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 
 public class Installer extends Main {
 
-    public interface Log { void line(String s); }
+    public interface Log {
+        void line(String s);
+        /** Typed event stream alongside the lines (see {@link InstallEvent}); ignored by default. */
+        default void event(InstallEvent e) {}
+    }
+
+    /** Where the per-run JSON timing report goes (inside our game dir). */
+    protected static final String TIMING_REPORT = "logs/hfd-install-timing.json";
+
+    /** Unreferenced store objects are kept this long before GC (reinstalls stay cheap). */
+    protected static final Duration STORE_GC_GRACE = Duration.ofDays(30);
+
+    /** Launcher-visible files as they were before this run first touched them (null = didn't exist). */
+    private final Map<Path, byte[]> journal = new LinkedHashMap<>();
 
     public void runInstall(Path mc, Log log) throws Exception {
+        TimingReport report = new TimingReport();
+        InstallEvents events = new InstallEvents(log).listen(report);
+        boolean ok = false;
+        Flight.Session recording = Flight.record(log);
+        try {
+            runPhases(mc, events);
+            ok = true;
+        } catch (Exception e) {
+            if (Cancellation.isCancel(e)) {
+                Thread.interrupted(); // the abort's interrupt would fail the restoring writes below
+                log.line("Install cancelled; restoring launcher files…");
+                rollback(log);
+            }
+            events.event(new InstallEvent.Error("install", String.valueOf(e.getMessage())));
+            throw e;
+        } finally {
+            recording.close(); // after a rollback, so the recording covers it
+            Path reportFile = mc.resolve(GAME_DIR_NAME).resolve(TIMING_REPORT);
+            try {
+                report.write(reportFile, ok);
+                log.line("Timing report: " + reportFile);
+            } catch (IOException e) {
+                log.line("Could not write timing report: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runPhases(Path mc, Log log) throws Exception {
         log.line("Minecraft dir: " + mc + "\n(Close the Minecraft Launcher before installing.)");
+        Path gameDir = mc.resolve(GAME_DIR_NAME);
+        Path modsDir = gameDir.resolve("mods");
+
+        // 0) Plan: diff desired state against disk with cheap checks, then apply only what differs
+        InstallPlan plan;
+        try (var ph = InstallEvent.phase(log, "plan")) {
+            plan = plan(mc, gameDir, modsDir, log);
+            ph.ok();
+        }
+        plan.log(log);
+        log.event(plan.toEvent());
+        if (plan.isEmpty()) {
+            log.line("Done (" + Instant.now() + ")! Nothing needed changing.");
+            return;
+        }
 
         // 1) Ensure NeoForge base exists (run embedded installer if needed)
-        String neo = findNeoForgeId(mc);
-        if (neo == null || (REQUIRED_NEOFORGE_ID != null && !REQUIRED_NEOFORGE_ID.equals(neo))) {
-            if (neo != null) log.line("Found '" + neo + "' but require '" + REQUIRED_NEOFORGE_ID + "'. Reinstalling…");
-            log.line("Running embedded NeoForge installer…");
-            Path inst = locateBundledInstaller(log);
-            if (inst == null) throw new IllegalStateException("No embedded neoforge-installer.jar.bin found in the installer JAR.");
-            runInstallerJar(inst, log);
-            neo = findNeoForgeId(mc);
-            if (neo == null || (REQUIRED_NEOFORGE_ID != null && !REQUIRED_NEOFORGE_ID.equals(neo))) {
-                throw new IllegalStateException("NeoForge not detected after running installer.");
+        String neo = plan.neoId();
+        if (plan.needs(InstallPlan.Step.NEOFORGE)) {
+            try (var ph = InstallEvent.phase(log, "neoforge")) {
+                if (neo != null) log.line("Found '" + neo + "' but require '" + REQUIRED_NEOFORGE_ID + "'. Reinstalling…");
+                log.line("Running embedded NeoForge installer…");
+                Path inst = locateBundledInstaller(log);
+                if (inst == null) throw new IllegalStateException("No embedded neoforge-installer.jar.bin found in the installer JAR.");
+                // the headless installer needs a launcher profile file and adds its own profile to it
+                snapshot(mc.resolve("launcher_profiles.json"));
+                detectLauncherProfilesFile(mc);
+                Set<String> before = versionDirs(mc);
+                try {
+                    runInstallerJar(inst, mc, log);
+                    neo = findNeoForgeId(mc);
+                    if (neo == null || (REQUIRED_NEOFORGE_ID != null && !REQUIRED_NEOFORGE_ID.equals(neo))) {
+                        throw new IllegalStateException("NeoForge not detected after running installer ("
+                                + neoForgeProblem(mc, REQUIRED_NEOFORGE_ID) + ").");
+                    }
+                } catch (Exception e) {
+                    removeNewVersionDirs(mc, before, log); // killed, stalled or failed part-way
+                    throw e;
+                }
+                ph.ok();
             }
         }
         log.line("Using base: " + neo);
 
         // 2) Create child version that inherits from NeoForge
-        Path childDir = mc.resolve("versions").resolve(CHILD_VERSION_ID);
-        Files.createDirectories(childDir);
-        var child = JSON.createObjectNode();
-        child.put("id", CHILD_VERSION_ID);
-        child.put("inheritsFrom", neo);
-        child.put("type", "release");
-        Path childJson = childDir.resolve(CHILD_VERSION_ID + ".json");
-        JSON.writerWithDefaultPrettyPrinter().writeValue(childJson.toFile(), child);
-        log.line("Wrote " + childJson);
+        if (plan.needs(InstallPlan.Step.CHILD_VERSION)) {
+            try (var ph = InstallEvent.phase(log, "child-version")) {
+                snapshot(childVersionJson(mc));
+                writeChildVersion(mc, neo, log);
+                ph.ok();
+            }
+        }
 
         // 3) Prepare gameDir + extract embedded mods
-        Path gameDir = mc.resolve(GAME_DIR_NAME);
-        Path modsDir = gameDir.resolve("mods");
-        Files.createDirectories(modsDir);
-        extractEmbeddedMods(modsDir, log);
+        if (plan.needs(InstallPlan.Step.EMBEDDED_MODS)) {
+            try (var ph = InstallEvent.phase(log, "embedded-mods")) {
+                Files.createDirectories(modsDir);
+                extractEmbeddedMods(modsDir, log);
+                ph.ok();
+            }
+        }
 
         // 3b) Fetch all external mods purely from config
-        new ModFetcher().fetchAll(modsDir, TARGET_MC_VERSION, log);
+        if (plan.needs(InstallPlan.Step.EXTERNAL_MODS)) {
+            try (var ph = InstallEvent.phase(log, "external-mods")) {
+                Files.createDirectories(modsDir);
+                new ModFetcher().fetchAll(modsDir, TARGET_MC_VERSION, log);
+                ph.ok();
+            }
+        }
 
         // 3c) Pre-seed client options so players don’t have to
-        ensureClientOptions(gameDir, log);
+        if (plan.needs(InstallPlan.Step.OPTIONS)) {
+            try (var ph = InstallEvent.phase(log, "options")) {
+                snapshot(gameDir.resolve("options.txt"));
+                ensureClientOptions(gameDir, log);
+                ph.ok();
+            }
+        }
 
         // 4) Update launcher profiles (set our profile + icon; remove NeoForge auto-profile)
-        Path profilesPath = detectLauncherProfilesFile(mc);
-        pruneProfilesUsingVersion(profilesPath, neo, log);
-        upsertHfdProfile(profilesPath, gameDir, log);
+        if (plan.needs(InstallPlan.Step.PROFILES)) {
+            try (var ph = InstallEvent.phase(log, "profiles")) {
+                snapshot(mc.resolve("launcher_profiles.json")); // detect… may create it
+                Path profilesPath = detectLauncherProfilesFile(mc);
+                snapshot(profilesPath);
+                pruneProfilesUsingVersion(profilesPath, neo, log);
+                upsertHfdProfile(profilesPath, gameDir, log);
+                ph.ok();
+            }
+        }
 
         // 5) Create Multiplayer server list (servers.dat) in our gameDir
-        Path serversDat = gameDir.resolve("servers.dat");
-        writeServersDat(serversDat, "HarambeFD", "harambefinaldestination.world", true);
-        log.line("Wrote servers.dat with HarambeFD.");
+        if (plan.needs(InstallPlan.Step.SERVERS_DAT)) {
+            try (var ph = InstallEvent.phase(log, "servers-dat")) {
+                snapshot(gameDir.resolve("servers.dat"));
+                writeServersDat(gameDir.resolve("servers.dat"), SERVER_NAME, SERVER_IP, true);
+                log.line("Wrote servers.dat with HarambeFD.");
+                ph.ok();
+            }
+        }
+
+        // 6) Drop artifact-store objects no instance has referenced for a while
+        try {
+            int n = ArtifactStore.shared().gc(STORE_GC_GRACE);
+            if (n > 0) log.line("Artifact store: removed " + n + " unused object(s).");
+        } catch (IOException e) {
+            log.line("Artifact store GC skipped: " + e.getMessage());
+        }
 
         log.line("Done (" + Instant.now() + ")!");
     }
 
+    // ---------------------------------------------------------------------
+    // Planning (local checks only: stats, indexed hashes, small JSON files)
+    // ---------------------------------------------------------------------
+
+    private static final String SERVER_NAME = "HarambeFD";
+    private static final String SERVER_IP = "harambefinaldestination.world";
+
+    InstallPlan plan(Path mc, Path gameDir, Path modsDir, Log log) throws Exception {
+        String neo = findNeoForgeId(mc);
+        boolean neoOk = neo != null && (REQUIRED_NEOFORGE_ID == null || REQUIRED_NEOFORGE_ID.equals(neo));
+        // not the required one: still note what is there, for the "Found … but require …" line
+        InstallPlan plan = new InstallPlan(neoOk ? neo : neoForgeIds(mc).stream().findFirst().orElse(null));
+        if (!neoOk) plan.add(InstallPlan.Step.NEOFORGE,
+                REQUIRED_NEOFORGE_ID != null ? neoForgeProblem(mc, REQUIRED_NEOFORGE_ID) : "not installed");
+
+        String base = neoOk ? neo : REQUIRED_NEOFORGE_ID;
+        Path childJson = childVersionJson(mc);
+        try {
+            if (!Files.isRegularFile(childJson) || !childVersionNode(base).equals(JSON.readTree(childJson.toFile()))) {
+                plan.add(InstallPlan.Step.CHILD_VERSION, CHILD_VERSION_ID + ".json missing or different");
+            }
+        } catch (IOException e) {
+            plan.add(InstallPlan.Step.CHILD_VERSION, "unreadable " + childJson.getFileName());
+        }
+
+        ModIndex index = ModIndex.of(modsDir);
+        try (EmbeddedPayload payload = EmbeddedPayload.open(selfJarPath())) {
+            plan.expect(InstallPlan.Step.EMBEDDED_MODS, payload.mods().size());
+            for (EmbeddedPayload.Mod m : payload.mods()) {
+                Path out = modsDir.resolve(m.name());
+                boolean current = m.sha512() != null
+                        ? index.isCurrent(out, m.sha512())
+                        : Files.isRegularFile(out) && Files.size(out) == m.size(); // dev / manifest-less jar
+                if (!current) plan.add(InstallPlan.Step.EMBEDDED_MODS, m.name());
+            }
+        }
+
+        ModFetcher fetcher = new ModFetcher();
+        plan.addAll(InstallPlan.Step.EXTERNAL_MODS, fetcher.plan(modsDir, TARGET_MC_VERSION, log));
+        plan.expect(InstallPlan.Step.EXTERNAL_MODS, fetcher.ruleCount(TARGET_MC_VERSION, log));
+
+        if (!optionsCurrent(gameDir.resolve("options.txt"))) plan.add(InstallPlan.Step.OPTIONS, "options.txt needs pre-seeding");
+
+        if (!neoOk || !hfdProfileCurrent(detectLauncherProfilesFile(mc), gameDir, base)) {
+            plan.add(InstallPlan.Step.PROFILES, "HFD launcher profile missing or different");
+        }
+
+        if (!serversDatCurrent(gameDir.resolve("servers.dat"), SERVER_NAME, SERVER_IP, true)) {
+            plan.add(InstallPlan.Step.SERVERS_DAT, "servers.dat missing or different");
+        }
+        return plan;
+    }
+
+    // ---------------------------------------------------------------------
+    // Rollback of launcher files (cancelled runs)
+    // ---------------------------------------------------------------------
+
+    private void snapshot(Path file) throws IOException {
+        if (!journal.containsKey(file)) journal.put(file, Files.isRegularFile(file) ? Files.readAllBytes(file) : null);
+    }
+
+    /**
+     * Put every journaled file back as it was. Mods are left as placed: each one is complete
+     * (atomic moves), and the next run's plan only fetches what is still missing.
+     */
+    private void rollback(Log log) {
+        List<Path> files = new ArrayList<>(journal.keySet());
+        Collections.reverse(files);
+        for (Path f : files) {
+            try {
+                byte[] before = journal.get(f);
+                if (before == null) Files.deleteIfExists(f);
+                else if (!Files.isRegularFile(f) || !Arrays.equals(before, Files.readAllBytes(f))) writeAtomically(f, before);
+            } catch (IOException e) {
+                log.line("Could not restore " + f.getFileName() + ": " + e.getMessage());
+            }
+        }
+        journal.clear();
+    }
+
+    private static Set<String> versionDirs(Path mc) throws IOException {
+        Path versions = mc.resolve("versions");
+        if (!Files.isDirectory(versions)) return Set.of();
+        try (var s = Files.list(versions)) {
+            return s.filter(Files::isDirectory).map(p -> p.getFileName().toString()).collect(java.util.stream.Collectors.toSet());
+        }
+    }
+
+    /** Delete version dirs that weren't there before the NeoForge run, so no later plan mistakes them for an install. */
+    private void removeNewVersionDirs(Path mc, Set<String> before, Log log) {
+        try {
+            for (String id : versionDirs(mc)) {
+                if (before.contains(id)) continue;
+                Path dir = mc.resolve("versions").resolve(id);
+                try (var walk = Files.walk(dir)) {
+                    for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+                }
+                log.line("Removed partial install " + dir);
+            }
+        } catch (IOException e) {
+            log.line("Could not remove partial NeoForge install: " + e.getMessage());
+        }
+    }
+
     // ---------------------------------------------------------------------
     // options.txt pre-seeding
     // ---------------------------------------------------------------------
@@ -74,16 +281,22 @@ public class Installer extends Main {
      *  - soundCategory_music: 0.25  (25% music volume)
      *  - skipMultiplayerWarning: true  (don't show the online-play warning)
      */
+    private static final Map<String, String> REQUIRED_OPTIONS = new LinkedHashMap<>();
+    static {
+        REQUIRED_OPTIONS.put("narrator", "0");                // off
+        REQUIRED_OPTIONS.put("soundCategory_music", "0.25");  // 25%
+        REQUIRED_OPTIONS.put("skipMultiplayerWarning", "true");
+    }
+
+    private boolean optionsCurrent(Path options) throws IOException {
+        return readOptions(options).entrySet().containsAll(REQUIRED_OPTIONS.entrySet());
+    }
+
     private void ensureClientOptions(Path gameDir, Log log) {
         Path options = gameDir.resolve("options.txt");
         try {
             Map<String, String> kv = readOptions(options);
-
-            // Apply required values
-            kv.put("narrator", "0");                // off
-            kv.put("soundCategory_music", "0.25");  // 25%
-            kv.put("skipMultiplayerWarning", "true");
-
+            kv.putAll(REQUIRED_OPTIONS);
             writeOptions(options, kv);
             log.line("Pre-seeded options: narrator=0, music=0.25, skipMultiplayerWarning=true → " + options);
         } catch (Exception e) {
@@ -111,8 +324,9 @@ public class Installer extends Main {
         for (Map.Entry<String, String> e : kv.entrySet()) {
             lines.add(e.getKey() + ":" + e.getValue());
         }
-        Files.createDirectories(options.getParent());
-        Files.write(options, lines, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        Flight.ConfigWrite jfr = new Flight.ConfigWrite();
+        jfr.begin();
+        writeAtomically(options, (String.join(System.lineSeparator(), lines) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        Flight.commit(jfr, "options", options);
     }
 }
@@ -0,0 +1,269 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Entry-level delta between two versions of a jar, so an upgrade can rebuild the new jar from the
+ * installed old one instead of extracting it whole. Works on the raw zip records, so the result is
+ * byte-identical: an entry whose compressed data is unchanged (same name, method, CRC, size, bytes)
+ * becomes a COPY of the old file's range, everything else (changed entries, the central directory)
+ * is carried as DATA. The patch names both SHA-512s; {@link #apply} checks the result and throws on
+ * any mismatch, and callers then fall back to the full file.
+ * <p>
+ * Build side: {@code JarDelta <oldJarsDir> <newJarsDir> <outDir>} writes {@code *.patch} plus
+ * {@code deltas.json} for every new jar that has an older version (same name without the version).
+ */
+final class JarDelta {
+
+    private static final int MAGIC = 0x48464450;       // "HFDP"
+    private static final int VERSION = 1;
+    private static final byte END = 0, COPY = 1, DATA = 2;
+    private static final double MAX_RATIO = 0.6;       // bigger patches aren't worth shipping
+
+    private JarDelta() {}
+
+    // ----------- Build side ------------
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: JarDelta <oldJarsDir> <newJarsDir> <outDir>");
+            System.exit(2);
+        }
+        Path oldDir = Paths.get(args[0]), newDir = Paths.get(args[1]), outDir = Paths.get(args[2]);
+        Files.createDirectories(outDir);
+        Map<String, List<Path>> olds = new HashMap<>();
+        for (Path p : jars(oldDir)) olds.computeIfAbsent(modKey(p), k -> new ArrayList<>()).add(p);
+
+        ArrayNode patches = Main.JSON.createArrayNode();
+        for (Path target : jars(newDir)) {
+            String to = ModIndex.hash(target)[1];
+            for (Path from : olds.getOrDefault(modKey(target), List.of())) {
+                String fromSha = ModIndex.hash(from)[1];
+                if (fromSha.equals(to)) continue;
+                String name = target.getFileName().toString().replaceFirst("\\.jar$", "") + ".from-" + fromSha.substring(0, 12) + ".patch";
+                Path patch = outDir.resolve(name);
+                try (OutputStream out = Files.newOutputStream(patch)) {
+                    diff(from, target, out);
+                } catch (IOException e) {
+                    System.out.println("No delta " + from.getFileName() + " → " + target.getFileName() + ": " + e.getMessage());
+                    Files.deleteIfExists(patch);
+                    continue;
+                }
+                long size = Files.size(patch), full = Files.size(target);
+                if (size > full * MAX_RATIO) {
+                    Files.delete(patch);
+                    continue;
+                }
+                ObjectNode n = patches.addObject();
+                n.put("target", target.getFileName().toString());
+                n.put("from", fromSha);
+                n.put("to", to);
+                n.put("file", name);
+                n.put("size", size);
+                System.out.printf(Locale.ROOT, "Delta %s → %s: %d of %d bytes (%.1f%%)%n",
+                        from.getFileName(), target.getFileName(), size, full, 100.0 * size / full);
+            }
+        }
+        ObjectNode root = Main.JSON.createObjectNode();
+        root.put("version", 1);
+        root.set("patches", patches);
+        Main.JSON.writerWithDefaultPrettyPrinter().writeValue(outDir.resolve("deltas.json").toFile(), root);
+    }
+
+    /** "harambefmod-1.4.2.jar" → "harambefmod": versions of one mod share the key. */
+    static String modKey(Path jar) {
+        String n = jar.getFileName().toString().toLowerCase(Locale.ROOT).replaceFirst("\\.jar$", "");
+        return n.replaceFirst("[-_+]?v?\\d[\\w.+-]*$", "");
+    }
+
+    private static List<Path> jars(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.jar")) {
+            for (Path p : ds) out.add(p);
+        }
+        out.sort(Comparator.naturalOrder());
+        return out;
+    }
+
+    /** Write the patch turning {@code oldJar} into {@code newJar}; throws for layouts it can't handle (zip64). */
+    static void diff(Path oldJar, Path newJar, OutputStream patch) throws IOException {
+        byte[] a = Files.readAllBytes(oldJar), b = Files.readAllBytes(newJar);
+        Map<String, Rec> olds = new HashMap<>();
+        for (Rec r : records(a)) olds.put(r.name, r);
+        List<Rec> news = records(b);
+
+        Ops ops = new Ops(b);
+        long pos = 0;
+        for (Rec r : news) {
+            ops.data(pos, r.offset);                               // anything before / between records
+            Rec o = olds.get(r.name);
+            if (o != null && o.method == r.method && o.crc == r.crc && o.csize == r.csize
+                    && Arrays.equals(a, (int) o.dataStart, (int) (o.dataStart + o.csize), b, (int) r.dataStart, (int) (r.dataStart + r.csize))) {
+                if (Arrays.equals(a, (int) o.offset, (int) o.dataStart, b, (int) r.offset, (int) r.dataStart)) ops.copy(o.offset, r.dataStart - r.offset);
+                else ops.data(r.offset, r.dataStart);
+                ops.copy(o.dataStart, o.csize);
+            } else {
+                ops.data(r.offset, r.dataStart + r.csize);
+            }
+            pos = r.dataStart + r.csize;
+        }
+        ops.data(pos, b.length);                                   // descriptors, central directory, EOCD
+
+        DeflaterOutputStream packed = new DeflaterOutputStream(patch);
+        DataOutputStream out = new DataOutputStream(packed);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(sha512(a));
+        out.writeUTF(sha512(b));
+        out.writeLong(b.length);
+        ops.write(out);
+        out.writeByte(END);
+        out.flush();
+        packed.finish();
+    }
+
+    // ----------- Install side ------------
+
+    /** Rebuild into {@code out} from {@code oldJar} + {@code patch}; verifies the result's SHA-512 and returns it. */
+    static String apply(Path oldJar, InputStream patch, Path out) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(patch)));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) throw new IOException("not a jar delta");
+        in.readUTF();                  // base SHA-512: callers pick the base by it; a wrong one fails the final check
+        String to = in.readUTF();
+        long size = in.readLong();
+
+        MessageDigest md = digest();
+        try (FileChannel old = FileChannel.open(oldJar, StandardOpenOption.READ);
+             OutputStream os = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(out,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)), md)) {
+            byte[] buf = new byte[64 * 1024];
+            long written = 0;
+            for (int op = in.readUnsignedByte(); op != END; op = in.readUnsignedByte()) {
+                if (op == COPY) {
+                    long off = in.readLong(), len = in.readLong();
+                    if (off < 0 || len < 0 || off + len > old.size()) throw new IOException("delta copies past the end of " + oldJar.getFileName());
+                    for (long done = 0; done < len; ) {
+                        ByteBuffer bb = ByteBuffer.wrap(buf, 0, (int) Math.min(buf.length, len - done));
+                        int n = old.read(bb, off + done);
+                        if (n < 0) throw new EOFException(oldJar.getFileName().toString());
+                        os.write(buf, 0, n);
+                        done += n;
+                    }
+                    written += len;
+                } else if (op == DATA) {
+                    int len = in.readInt();
+                    for (int done = 0; done < len; ) {
+                        int n = in.read(buf, 0, Math.min(buf.length, len - done));
+                        if (n < 0) throw new EOFException("truncated delta");
+                        os.write(buf, 0, n);
+                        done += n;
+                    }
+                    written += len;
+                } else {
+                    throw new IOException("bad delta op " + op);
+                }
+                if (written > size) throw new IOException("delta output too long");
+            }
+            if (written != size) throw new IOException("delta output has the wrong size");
+        }
+        String got = HexFormat.of().formatHex(md.digest());
+        if (!got.equalsIgnoreCase(to)) throw new IOException("SHA-512 mismatch after applying delta");
+        return got;
+    }
+
+    // ----------- Zip records ------------
+
+    /** One local record: header at {@code offset}, compressed data at {@code dataStart}. */
+    private record Rec(String name, long offset, long dataStart, int method, long crc, long csize) {}
+
+    /** Local records of a (non-zip64) archive, in file order, from its central directory. */
+    private static List<Rec> records(byte[] z) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(z).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = -1;
+        for (int i = z.length - 22; i >= Math.max(0, z.length - 22 - 65535); i--) {
+            if (bb.getInt(i) == 0x06054b50) { eocd = i; break; }
+        }
+        if (eocd < 0) throw new IOException("not a zip");
+        int count = Short.toUnsignedInt(bb.getShort(eocd + 10));
+        long cdOff = Integer.toUnsignedLong(bb.getInt(eocd + 16));
+        if (count == 0xFFFF || cdOff == 0xFFFFFFFFL) throw new IOException("zip64 is not supported");
+
+        List<Rec> out = new ArrayList<>(count);
+        int p = (int) cdOff;
+        for (int i = 0; i < count; i++) {
+            if (p + 46 > z.length || bb.getInt(p) != 0x02014b50) throw new IOException("bad central directory");
+            int method = Short.toUnsignedInt(bb.getShort(p + 10));
+            long crc = Integer.toUnsignedLong(bb.getInt(p + 16));
+            long csize = Integer.toUnsignedLong(bb.getInt(p + 20));
+            int n = Short.toUnsignedInt(bb.getShort(p + 28)), m = Short.toUnsignedInt(bb.getShort(p + 30)), k = Short.toUnsignedInt(bb.getShort(p + 32));
+            long local = Integer.toUnsignedLong(bb.getInt(p + 42));
+            if (csize == 0xFFFFFFFFL || local == 0xFFFFFFFFL) throw new IOException("zip64 is not supported");
+            String name = new String(z, p + 46, n, StandardCharsets.UTF_8);
+            if (local + 30 > z.length || bb.getInt((int) local) != 0x04034b50) throw new IOException("bad local header for " + name);
+            long data = local + 30 + Short.toUnsignedInt(bb.getShort((int) local + 26)) + Short.toUnsignedInt(bb.getShort((int) local + 28));
+            if (data + csize > z.length) throw new IOException("entry past the end: " + name);
+            out.add(new Rec(name, local, data, method, crc, csize));
+            p += 46 + n + m + k;
+        }
+        out.sort(Comparator.comparingLong(Rec::offset));
+        return out;
+    }
+
+    /** Op list with adjacent COPYs and DATAs merged. */
+    private static final class Ops {
+        private final byte[] target;
+        private final List<long[]> ops = new ArrayList<>(); // {COPY, oldOff, len} or {DATA, newFrom, newTo}
+
+        Ops(byte[] target) { this.target = target; }
+
+        void copy(long off, long len) {
+            if (len <= 0) return;
+            long[] last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+            if (last != null && last[0] == COPY && last[1] + last[2] == off) last[2] += len;
+            else ops.add(new long[]{COPY, off, len});
+        }
+
+        void data(long from, long to) {
+            if (to <= from) return;
+            long[] last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+            if (last != null && last[0] == DATA && last[2] == from) last[2] = to;
+            else ops.add(new long[]{DATA, from, to});
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            for (long[] op : ops) {
+                if (op[0] == COPY) {
+                    out.writeByte(COPY);
+                    out.writeLong(op[1]);
+                    out.writeLong(op[2]);
+                } else {
+                    out.writeByte(DATA);
+                    out.writeInt((int) (op[2] - op[1]));
+                    out.write(target, (int) op[1], (int) (op[2] - op[1]));
+                }
+            }
+        }
+    }
+
+    private static String sha512(byte[] b) { return HexFormat.of().formatHex(digest().digest(b)); }
+
+    private static MessageDigest digest() {
+        try { return MessageDigest.getInstance("SHA-512"); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+    }
+}
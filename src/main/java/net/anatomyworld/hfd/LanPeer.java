@@ -0,0 +1,240 @@
+package net.anatomyworld.hfd;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.*;
+import java.net.http.HttpConnectTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LAN distribution for install parties: one instance ({@code --serve-lan [port]}) serves the
+ * {@link ArtifactStore} objects it already has over plain HTTP as {@code /hfd/v1/objects/<sha512>},
+ * and announces itself by multicast. Other installers try those peers first for anything with a
+ * known SHA-512 and fall back to the normal sources on a miss. Both ends verify: the server
+ * re-hashes an object before it first serves it, the client checks the hash like any download.
+ * <p>
+ * Server knobs: {@code -Dhfd.lan.bind=<address>} listens (and announces) on that interface only;
+ * by default the server listens on every interface of the machine. Client knobs:
+ * {@code -Dhfd.lan.peers=http://host:port,…} (explicit, e.g. loopback) and
+ * {@code -Dhfd.lan.discover=true} (listen for announcements briefly on first use).
+ */
+final class LanPeer implements AutoCloseable {
+
+    static final String OBJECTS = "/hfd/v1/objects/";
+    static final int DEFAULT_PORT = 47625;
+
+    private static final String GROUP = "239.255.76.70";
+    private static final int BEACON_PORT = 47626;
+    private static final String BEACON = "HFD-PEER/1 ";
+    private static final long BEACON_EVERY_MS = 2_000;
+    private static final int DISCOVER_MS = Integer.getInteger("hfd.lan.discoverMs", 2_500);
+
+    private final ArtifactStore store;
+    private final Installer.Log log;
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final Set<String> verified = ConcurrentHashMap.newKeySet(); // objects re-hashed OK
+    private Thread beacon;
+    private volatile boolean closed;
+
+    private LanPeer(ArtifactStore store, InetSocketAddress address, Installer.Log log) throws IOException {
+        this.store = store;
+        this.log = log;
+        this.server = HttpServer.create(address, 0);
+        this.pool = Executors.newFixedThreadPool(8, r -> {
+            Thread t = new Thread(r, "hfd-lan");
+            t.setDaemon(true);
+            return t;
+        });
+        server.createContext(OBJECTS, this::handle);
+        server.setExecutor(pool);
+    }
+
+    // ----------- Server ------------
+
+    /** Serve {@code store} on {@code port} (0 = any) of every interface; with {@code announce}, multicast a beacon too. */
+    static LanPeer serve(ArtifactStore store, int port, boolean announce, Installer.Log log) throws IOException {
+        return serve(store, null, port, announce, log);
+    }
+
+    /** As above on {@code bind} only (null = every interface). */
+    static LanPeer serve(ArtifactStore store, InetAddress bind, int port, boolean announce, Installer.Log log) throws IOException {
+        LanPeer p = new LanPeer(store, bind != null ? new InetSocketAddress(bind, port) : new InetSocketAddress(port), log);
+        p.server.start();
+        if (announce) p.startBeacon(bind);
+        log.line("Serving the artifact store " + store.root() + " on "
+                + (bind != null ? bind.getHostAddress() + ":" + p.port() : "port " + p.port() + " of every interface")
+                + (announce ? " (announced on " + GROUP + ":" + BEACON_PORT + ")" : ""));
+        return p;
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    @Override public void close() {
+        closed = true;
+        if (beacon != null) beacon.interrupt();
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String sha = ex.getRequestURI().getPath().substring(OBJECTS.length()).toLowerCase(Locale.ROOT);
+            boolean head = "HEAD".equals(ex.getRequestMethod());
+            if (!head && !"GET".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            Path obj = sha.matches("[0-9a-f]{128}") ? store.find(sha) : null;
+            if (obj == null || !verify(sha, obj)) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            long size = Files.size(obj);
+            ex.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            if (head) {
+                ex.getResponseHeaders().set("Content-Length", Long.toString(size));
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, size == 0 ? -1 : size);
+            try (InputStream in = Files.newInputStream(obj); OutputStream out = ex.getResponseBody()) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    /**
+     * Hash the object once per process before serving it; a mismatch is never served (and dropped).
+     * Only successes are remembered: a good copy stored again later is checked and served.
+     */
+    private boolean verify(String sha, Path obj) throws IOException {
+        if (verified.contains(sha)) return true;
+        if (!ModIndex.hash(obj)[1].equalsIgnoreCase(sha)) {
+            log.line("Not serving corrupt store object " + sha.substring(0, 12) + "…");
+            Files.deleteIfExists(obj);
+            return false;
+        }
+        verified.add(sha);
+        return true;
+    }
+
+    private void startBeacon(InetAddress bind) {
+        byte[] msg = (BEACON + port()).getBytes(StandardCharsets.US_ASCII);
+        beacon = new Thread(() -> {
+            try (DatagramSocket s = bind != null ? new DatagramSocket(new InetSocketAddress(bind, 0)) : new DatagramSocket()) {
+                InetAddress group = InetAddress.getByName(GROUP);
+                while (!closed) {
+                    s.send(new DatagramPacket(msg, msg.length, group, BEACON_PORT));
+                    Thread.sleep(BEACON_EVERY_MS);
+                }
+            } catch (IOException e) {
+                if (!closed) log.line("LAN announcements stopped (" + e.getMessage() + "); peers can still use -Dhfd.lan.peers");
+            } catch (InterruptedException ignored) {
+                // closing
+            }
+        }, "hfd-lan-beacon");
+        beacon.setDaemon(true);
+        beacon.start();
+    }
+
+    // ----------- Client ------------
+
+    private static volatile List<String> discovered;
+
+    /** Peers that couldn't be connected to during this run: skipped until {@link #forgetUnreachable}. */
+    private static final Set<String> unreachable = ConcurrentHashMap.newKeySet();
+
+    /** Base URLs of known peers: {@code hfd.lan.peers}, plus announced ones if discovery is on (listened for once). */
+    static List<String> peers() {
+        Set<String> out = new LinkedHashSet<>();
+        for (String s : System.getProperty("hfd.lan.peers", "").split(",")) {
+            if (!s.isBlank()) out.add(s.strip().replaceAll("/+$", ""));
+        }
+        if (Boolean.getBoolean("hfd.lan.discover")) {
+            if (discovered == null) {
+                synchronized (LanPeer.class) {
+                    if (discovered == null) discovered = discover(DISCOVER_MS);
+                }
+            }
+            out.addAll(discovered);
+        }
+        return List.copyOf(out);
+    }
+
+    /** Peer URLs for the object {@code sha512}, in preference order (empty if no peers or no hash). */
+    static List<String> objectUrls(String sha512) {
+        if (sha512 == null || sha512.isBlank()) return List.of();
+        List<String> out = new ArrayList<>();
+        for (String base : peers()) {
+            if (!unreachable.contains(base)) out.add(base + OBJECTS + sha512.toLowerCase(Locale.ROOT));
+        }
+        return out;
+    }
+
+    static boolean isPeerUrl(String url) { return url.contains(OBJECTS); }
+
+    /** Base URL of the peer serving object {@code url}. */
+    static String peerOf(String url) { return url.substring(0, url.indexOf(OBJECTS)); }
+
+    /**
+     * Note a failed request to the peer object {@code url}; returns true if the peer itself is
+     * out of reach (refused or timed out connecting), so every other file skips it this run.
+     */
+    static boolean failed(String url, IOException e) {
+        if (!(e instanceof ConnectException || e instanceof HttpConnectTimeoutException)) return false;
+        unreachable.add(peerOf(url));
+        return true;
+    }
+
+    /** True if {@code url}'s peer was found unreachable earlier in this run. */
+    static boolean isUnreachable(String url) {
+        return isPeerUrl(url) && unreachable.contains(peerOf(url));
+    }
+
+    /** Start over: the next run asks every peer again (it may be up by now). */
+    static void forgetUnreachable() { unreachable.clear(); }
+
+    /** Listen for beacons for up to {@code waitMs}; returns the announced peers' base URLs. */
+    static List<String> discover(int waitMs) {
+        Set<String> found = new LinkedHashSet<>();
+        try (MulticastSocket s = new MulticastSocket(BEACON_PORT)) {
+            InetAddress group = InetAddress.getByName(GROUP);
+            s.joinGroup(new InetSocketAddress(group, BEACON_PORT), null);
+            long deadline = System.currentTimeMillis() + waitMs;
+            byte[] buf = new byte[64];
+            while (true) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) break;
+                s.setSoTimeout((int) left);
+                DatagramPacket pkt = new DatagramPacket(buf, buf.length);
+                try {
+                    s.receive(pkt);
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                String msg = new String(pkt.getData(), 0, pkt.getLength(), StandardCharsets.US_ASCII);
+                if (!msg.startsWith(BEACON)) continue;
+                try {
+                    int port = Integer.parseInt(msg.substring(BEACON.length()).trim());
+                    String host = pkt.getAddress() instanceof Inet6Address ? "[" + pkt.getAddress().getHostAddress() + "]"
+                            : pkt.getAddress().getHostAddress();
+                    found.add("http://" + host + ":" + port);
+                } catch (NumberFormatException ignored) {}
+            }
+        } catch (IOException e) {
+            // no multicast on this network: explicit peers still work
+        }
+        return List.copyOf(found);
+    }
+}
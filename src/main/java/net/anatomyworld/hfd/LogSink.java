@@ -0,0 +1,157 @@
+package net.anatomyworld.hfd;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Installer.Log that never touches the EDT per line.
+ * Producers push into lock-free queues; a capped-rate Swing timer, running only while lines are
+ * waiting, flushes batches into the text area (keeping only the last {@code maxLines} lines), and
+ * a daemon thread appends the complete log to a file.
+ */
+final class LogSink implements Installer.Log {
+
+    private static final int FLUSH_FPS = 30;
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private final JTextArea area;
+    private final int maxLines;
+    private final ConcurrentLinkedQueue<String> uiQueue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> fileQueue = new ConcurrentLinkedQueue<>();
+    private final javax.swing.Timer flusher;
+    private final AtomicBoolean flusherArmed = new AtomicBoolean(); // started, or a start is queued on the EDT
+    private final Path logFile;
+    private final Thread writer;
+    private volatile boolean closed = false;
+    private volatile boolean fileOk = true;
+
+    LogSink(JTextArea area, int maxLines, Path logFile) {
+        this.area = area;
+        this.maxLines = maxLines;
+        this.logFile = logFile;
+
+        flusher = new javax.swing.Timer(1000 / FLUSH_FPS, e -> flushToArea());
+        flusher.setCoalesce(true);
+
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    /** Default log file: {@code <tmp>/hfd-installer-<pid>.log}, so two open installers keep separate logs. */
+    static Path defaultLogFile() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "hfd-installer-" + ProcessHandle.current().pid() + ".log");
+    }
+
+    Path logFile() { return logFile; }
+
+    @Override public void line(String s) {
+        if (closed) return;
+        uiQueue.offer(s);
+        if (flusherArmed.compareAndSet(false, true)) SwingUtilities.invokeLater(flusher::start);
+        if (fileOk) {
+            fileQueue.offer(s);
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /** Stops the UI flusher after a final flush and drains the file queue (bounded wait). */
+    void close() {
+        closed = true;
+        if (SwingUtilities.isEventDispatchThread()) {
+            flusher.stop();
+            flushToArea();
+        } else {
+            SwingUtilities.invokeLater(() -> { flusher.stop(); flushToArea(); });
+        }
+        LockSupport.unpark(writer);
+        try { writer.join(2000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    // ----------- UI side (EDT) ------------
+
+    /** Timer tick: append what is queued, and stop the timer once nothing is left (the next line restarts it). */
+    private void flushToArea() {
+        append();
+        if (!uiQueue.isEmpty()) return;
+        flusher.stop();
+        flusherArmed.set(false);
+        // a line queued between the drain and the disarm found the timer still armed: pick it up
+        if (!uiQueue.isEmpty() && flusherArmed.compareAndSet(false, true)) flusher.start();
+    }
+
+    private void append() {
+        if (uiQueue.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        int lines = 0;
+        String s;
+        while ((s = uiQueue.poll()) != null) {
+            sb.append(s).append('\n');
+            lines++;
+        }
+        // a burst larger than the ring only needs its tail
+        if (lines > maxLines) sb.delete(0, tailStart(sb, maxLines));
+
+        area.append(sb.toString());
+        trimToMaxLines(area.getDocument());
+        area.setCaretPosition(area.getDocument().getLength());
+    }
+
+    private void trimToMaxLines(Document doc) {
+        Element root = doc.getDefaultRootElement();
+        int excess = root.getElementCount() - maxLines - 1; // last element is the empty line after '\n'
+        if (excess <= 0) return;
+        try {
+            doc.remove(0, root.getElement(excess - 1).getEndOffset());
+        } catch (BadLocationException ignored) {}
+    }
+
+    /** Offset where the last {@code n} '\n'-terminated lines of {@code sb} begin. */
+    private static int tailStart(CharSequence sb, int n) {
+        int seen = 0;
+        for (int i = sb.length() - 1; i >= 0; i--) {
+            if (sb.charAt(i) == '\n' && ++seen == n + 1) return i + 1;
+        }
+        return 0;
+    }
+
+    // ----------- File side (daemon thread) ------------
+
+    private void writeLoop() {
+        try (BufferedWriter out = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (true) {
+                String s;
+                boolean wrote = false;
+                while ((s = fileQueue.poll()) != null) {
+                    out.write(LocalTime.now().format(TS));
+                    out.write("  ");
+                    out.write(s);
+                    out.newLine();
+                    wrote = true;
+                }
+                if (wrote) out.flush();
+                if (closed && fileQueue.isEmpty()) return;
+                LockSupport.parkNanos(this, 250_000_000L);
+            }
+        } catch (IOException e) {
+            fileOk = false; // the UI log still works; stop queueing for the file
+            fileQueue.clear();
+        }
+    }
+}
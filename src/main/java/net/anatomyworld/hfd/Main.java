@@ -6,14 +6,13 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import javax.swing.*;
 import java.io.*;
+import java.net.InetAddress;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 public class Main {
 
@@ -35,6 +34,62 @@ public class Main {
     protected static final ObjectMapper JSON = new ObjectMapper();
 
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--refresh-mods")) {
+            // ignore the build-time bundle and resolve external mods online
+            System.setProperty("hfd.refreshMods", "true");
+            args = Arrays.stream(args).filter(a -> !"--refresh-mods".equals(a)).toArray(String[]::new);
+        }
+        int jfr = Arrays.asList(args).indexOf("--jfr");
+        if (jfr >= 0 && jfr + 1 < args.length) {
+            // --jfr <file>: record a flight recording of each install to <file> (open it in JMC)
+            System.setProperty("hfd.jfr", args[jfr + 1]);
+            List<String> rest = new ArrayList<>(Arrays.asList(args));
+            rest.subList(jfr, jfr + 2).clear();
+            args = rest.toArray(String[]::new);
+        }
+        if (args.length > 0 && "--store-gc".equals(args[0])) {
+            // --store-gc [graceDays]: collect unreferenced artifact-store objects and exit
+            int days = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+            try {
+                ArtifactStore store = ArtifactStore.shared();
+                System.out.println("Removed " + store.gc(java.time.Duration.ofDays(days)) + " object(s) from " + store.root());
+            } catch (IOException e) {
+                System.err.println("Store GC failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && "--serve-lan".equals(args[0])) {
+            // --serve-lan [port]: share this machine's verified artifact store with installers on the LAN
+            // (every interface, or only -Dhfd.lan.bind=<address>)
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : LanPeer.DEFAULT_PORT;
+            boolean announce = !"false".equals(System.getProperty("hfd.lan.multicast"));
+            String bind = System.getProperty("hfd.lan.bind", "");
+            try {
+                InetAddress address = bind.isBlank() ? null : InetAddress.getByName(bind);
+                LanPeer.serve(ArtifactStore.shared(), address, port, announce, System.out::println);
+                System.out.println("Press Ctrl+C to stop.");
+                Thread.currentThread().join();
+            } catch (IOException e) {
+                System.err.println("LAN server failed: " + e.getMessage());
+                System.exit(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        if (args.length > 0 && ("--verify".equals(args[0]) || "--repair".equals(args[0]))) {
+            // --verify|--repair [minecraftDir]: headless integrity check of an installed pack
+            PackVerifier v = new PackVerifier();
+            Path mc = args.length > 1 ? Paths.get(args[1]) : v.defaultMinecraftDir();
+            try {
+                boolean ok = v.run(mc, "--repair".equals(args[0]), System.out::println).ok();
+                System.exit(ok ? 0 : 2);
+            } catch (Exception e) {
+                System.err.println("Verify failed: " + e.getMessage());
+                System.exit(1);
+            }
+        }
         SwingUtilities.invokeLater(() -> new UiApp().open());
     }
 
@@ -51,28 +106,112 @@ public class Main {
         return Paths.get(System.getProperty("user.home"), ".minecraft");
     }
 
-    /** Find an installed neoforge-* under versions/. */
+    /** Find a completely installed neoforge-* under versions/ (see {@link #neoForgeProblem}). */
     protected String findNeoForgeId(Path mcDir) throws IOException {
+        List<String> ids = neoForgeIds(mcDir);
+        if (ids.isEmpty()) return null;
+        if (REQUIRED_NEOFORGE_ID != null) {
+            for (String id : ids) if (id.equals(REQUIRED_NEOFORGE_ID)) return id;
+            return null;
+        }
+        return ids.get(0);
+    }
+
+    /** Every completely installed neoforge-* under versions/, newest first (whether required or not). */
+    protected List<String> neoForgeIds(Path mcDir) throws IOException {
         Path versions = mcDir.resolve("versions");
-        if (!Files.isDirectory(versions)) return null;
+        if (!Files.isDirectory(versions)) return List.of();
         List<String> ids = new ArrayList<>();
         try (var stream = Files.list(versions)) {
             stream.filter(Files::isDirectory)
                     .map(p -> p.getFileName().toString())
                     .filter(n -> n.toLowerCase(Locale.ROOT).startsWith("neoforge-"))
+                    .filter(n -> neoForgeProblem(mcDir, n) == null)
                     .forEach(ids::add);
         }
         ids.sort(Comparator.reverseOrder());
-        if (ids.isEmpty()) return null;
-        if (REQUIRED_NEOFORGE_ID != null) {
-            for (String id : ids) if (id.equals(REQUIRED_NEOFORGE_ID)) return id;
-            return null;
+        return ids;
+    }
+
+    /**
+     * Why versions/{@code id} is not a usable NeoForge install, or null if it is: the version json
+     * must parse and every library it lists must be under libraries/. An installer that was killed
+     * or failed leaves the directory behind without the libraries its processors would produce.
+     */
+    protected String neoForgeProblem(Path mcDir, String id) {
+        Path json = mcDir.resolve("versions").resolve(id).resolve(id + ".json");
+        if (!Files.isDirectory(json.getParent())) return "not installed";
+        JsonNode version;
+        try {
+            version = JSON.readTree(json.toFile());
+        } catch (IOException e) {
+            return "incomplete (" + json.getFileName() + " missing or unreadable)";
         }
-        return ids.get(0);
+        Path libs = mcDir.resolve("libraries");
+        List<String> missing = new ArrayList<>();
+        for (JsonNode lib : version.path("libraries")) {
+            String rel = libraryPath(lib);
+            if (rel != null && !Files.isRegularFile(libs.resolve(rel))) missing.add(rel);
+        }
+        if (missing.isEmpty()) return null;
+        return "incomplete (" + missing.size() + " librar" + (missing.size() == 1 ? "y" : "ies") + " missing, e.g. " + missing.get(0) + ")";
     }
 
-    /** Extract embedded installer (.jar.bin) into a temp .jar. */
+    /** libraries/-relative path of a version-json library: downloads.artifact.path, else from its Maven name. */
+    static String libraryPath(JsonNode lib) {
+        String path = lib.path("downloads").path("artifact").path("path").asText("");
+        if (!path.isEmpty()) return path;
+        String name = lib.path("name").asText("");
+        String ext = "jar";
+        int at = name.indexOf('@');
+        if (at >= 0) {
+            ext = name.substring(at + 1);
+            name = name.substring(0, at);
+        }
+        String[] c = name.split(":");
+        if (c.length < 3) return null;
+        String file = c[1] + "-" + c[2] + (c.length > 3 ? "-" + c[3] : "") + "." + ext;
+        return c[0].replace('.', '/') + "/" + c[1] + "/" + c[2] + "/" + file;
+    }
+
+    /** Extract embedded installer (.jar.bin or solid payload) into the artifact store (temp .jar if the store is unusable). */
     protected Path locateBundledInstaller(Installer.Log log) {
+        SolidPayload solid = SolidPayload.get();
+        if (solid != null && solid.contains(NEOFORGE_RES_CL)) {
+            try {
+                Path obj = solid.object(NEOFORGE_RES_CL);
+                log.line("Embedded installer ready: " + obj);
+                log.event(new InstallEvent.FilePlaced(obj, Files.size(obj), "embedded"));
+                return obj;
+            } catch (IOException e) {
+                log.line("Could not unpack the embedded installer: " + e.getMessage());
+                return null;
+            }
+        }
+        try (InputStream inA = Main.class.getResourceAsStream(NEOFORGE_RES_CLZ);
+             InputStream inB = inA == null ? Main.class.getClassLoader().getResourceAsStream(NEOFORGE_RES_CL) : null) {
+            InputStream in = inA != null ? inA : inB;
+            if (in != null) {
+                try {
+                    EmbeddedPayload.Entry known = EmbeddedPayload.manifestEntry(NEOFORGE_RES_CL);
+                    Path cached = known != null && known.sha512() != null ? ArtifactStore.shared().find(known.sha512()) : null;
+                    if (cached != null) {
+                        log.line("Embedded installer already in the artifact store: " + cached);
+                        log.event(new InstallEvent.CacheHit(NEOFORGE_RES_CL));
+                        return cached;
+                    }
+                    Flight.Extract jfr = new Flight.Extract();
+                    jfr.begin();
+                    Path obj = ArtifactStore.shared().ingest(in);
+                    Flight.commit(jfr, obj, "embedded");
+                    log.line("Embedded installer ready: " + obj);
+                    log.event(new InstallEvent.FilePlaced(obj, Files.size(obj), "embedded"));
+                    return obj;
+                } catch (IOException storeFailed) {
+                    log.line("Artifact store unavailable (" + storeFailed.getMessage() + "), using a temp file.");
+                }
+            }
+        } catch (IOException ignored) {}
         try (InputStream inA = Main.class.getResourceAsStream(NEOFORGE_RES_CLZ);
              InputStream inB = inA == null ? Main.class.getClassLoader().getResourceAsStream(NEOFORGE_RES_CL) : null) {
             InputStream in = inA != null ? inA : inB;
@@ -82,6 +221,7 @@ public class Main {
                     in.transferTo(out);
                 } catch (IOException e) { return null; }
                 log.line("Embedded installer extracted: " + tmp.getFileName());
+                log.event(new InstallEvent.FilePlaced(tmp, Files.size(tmp), "embedded"));
                 tmp.toFile().deleteOnExit();
                 return tmp;
             }
@@ -89,12 +229,9 @@ public class Main {
         return null;
     }
 
-    protected void runInstallerJar(Path installer, Installer.Log log) throws Exception {
-        log.line("Launching installer: " + installer);
-        Process p = new ProcessBuilder(findJavaBin(), "-jar", installer.toAbsolutePath().toString())
-                .inheritIO().start();
-        p.waitFor();
-        log.line("Installer exited with code " + p.exitValue());
+    /** Run the NeoForge installer headless into {@code mcDir} (see {@link NeoForgeChild}). */
+    protected void runInstallerJar(Path installer, Path mcDir, Installer.Log log) throws Exception {
+        NeoForgeChild.run(findJavaBin(), installer, mcDir, log);
     }
 
     protected String findJavaBin() {
@@ -103,37 +240,75 @@ public class Main {
 
     /** Extract embedded mods from embedded/mods/ (accept .jar or .jar.bin). */
     protected void extractEmbeddedMods(Path destDir, Installer.Log log) throws Exception {
-        Path self = selfJarPath();
-        if (self == null || !self.toString().toLowerCase(Locale.ROOT).endsWith(".jar")) {
-            // dev mode (IDE): copy from project-root mods/
-            Path devMods = Paths.get("mods");
-            if (Files.isDirectory(devMods)) {
-                try (DirectoryStream<Path> ds = Files.newDirectoryStream(devMods, "*.jar")) {
-                    for (Path p : ds) {
-                        Files.copy(p, destDir.resolve(p.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
-                        log.line("Copied mod (dev): " + p.getFileName());
-                    }
+        ModIndex index = ModIndex.of(destDir);
+        try (EmbeddedPayload payload = EmbeddedPayload.open(selfJarPath())) {
+            for (EmbeddedPayload.Mod m : payload.mods()) {
+                Cancellation.current().check();
+                Path out = destDir.resolve(m.name());
+                if (index.isCurrent(out, m.sha512())) {
+                    // manifest hash matches the indexed file: nothing to read from the jar
+                    log.line("Up to date: " + m.name());
+                    log.event(new InstallEvent.CacheHit(m.name()));
+                    continue;
+                }
+                Flight.Extract extract = new Flight.Extract();
+                extract.begin();
+                // upgrade: an older version a patch starts from is installed → rebuild from it
+                EmbeddedPayload.Patch patch = deltaFor(m, index);
+                Path old = patch != null ? index.path(index.findBySha512(patch.from())) : null;
+                boolean patched = old != null && applyDelta(m, patch, old, out, log);
+                long n = patched ? Files.size(out) : ArtifactStore.placeFrom(m.source(), out);
+                Flight.commit(extract, out, patched ? "delta" : "embedded");
+                Flight.Verify verify = new Flight.Verify();
+                verify.begin();
+                ModIndex.Entry got = index.record(out);
+                boolean match = m.sha512() == null || m.sha512().equalsIgnoreCase(got.sha512());
+                Flight.commit(verify, out, match);
+                if (!match) {
+                    throw new IOException("Embedded " + m.name() + " does not match the payload manifest (corrupt installer?)");
                 }
+                if (old != null && !old.equals(out)) {
+                    Files.deleteIfExists(old); // the previous version of this mod
+                    index.remove(old);
+                    log.line("Upgraded " + old.getFileName() + " → " + m.name() + (patched ? " (delta)" : ""));
+                } else {
+                    log.line((payload.isDev() ? "Copied mod (dev): " : "Copied mod: ") + m.name());
+                }
+                log.event(new InstallEvent.FilePlaced(out, n, "embedded"));
             }
-            return;
+            if (payload.mods().isEmpty() && !payload.isDev()) log.line("(No embedded mods found under embedded/mods/)");
+        } finally {
+            index.save();
         }
-        try (ZipFile zf = new ZipFile(self.toFile())) {
-            Enumeration<? extends ZipEntry> it = zf.entries();
-            boolean any = false;
-            while (it.hasMoreElements()) {
-                ZipEntry e = it.nextElement();
-                if (!e.isDirectory() && e.getName().startsWith("embedded/mods/")) {
-                    String name = e.getName().substring("embedded/mods/".length());
-                    if (!(name.endsWith(".jar") || name.endsWith(".jar.bin"))) continue;
-                    any = true;
-                    String outName = name.replaceFirst("\\.jar\\.bin$", ".jar");
-                    try (InputStream in = zf.getInputStream(e)) {
-                        Files.copy(in, destDir.resolve(outName), StandardCopyOption.REPLACE_EXISTING);
-                    }
-                    log.line("Copied mod: " + outName);
-                }
+    }
+
+    /** First patch of {@code m} whose base version is installed (indexed by hash), or null. */
+    private EmbeddedPayload.Patch deltaFor(EmbeddedPayload.Mod m, ModIndex index) {
+        if (m.sha512() == null) return null;
+        for (EmbeddedPayload.Patch p : m.patches()) {
+            if (index.findBySha512(p.from()) != null) return p;
+        }
+        return null;
+    }
+
+    /** Rebuild {@code out} from {@code old} + {@code patch} through the store; false (full extract instead) if anything is off. */
+    private boolean applyDelta(EmbeddedPayload.Mod m, EmbeddedPayload.Patch patch, Path old, Path out, Installer.Log log) {
+        try {
+            ArtifactStore store = ArtifactStore.shared();
+            Files.createDirectories(store.root());
+            Path tmp = Files.createTempFile(store.root(), "delta-", ".tmp");
+            try (InputStream in = patch.open()) {
+                String sha = JarDelta.apply(old, in, tmp);
+                if (!sha.equalsIgnoreCase(m.sha512())) throw new IOException("delta builds a different jar than the manifest lists");
+                store.ingest(tmp, sha);
+            } finally {
+                Files.deleteIfExists(tmp);
             }
-            if (!any) log.line("(No embedded mods found under embedded/mods/)");
+            store.place(m.sha512(), out);
+            return true;
+        } catch (IOException e) {
+            log.line("Delta for " + m.name() + " unusable (" + e.getMessage() + "), extracting the full jar.");
+            return false;
         }
     }
 
@@ -145,6 +320,43 @@ public class Main {
         } catch (Exception e) { return null; }
     }
 
+    /** versions/<child>/<child>.json inheriting from {@code neoId}. */
+    protected Path childVersionJson(Path mcDir) {
+        return mcDir.resolve("versions").resolve(CHILD_VERSION_ID).resolve(CHILD_VERSION_ID + ".json");
+    }
+
+    protected ObjectNode childVersionNode(String neoId) {
+        ObjectNode child = JSON.createObjectNode();
+        child.put("id", CHILD_VERSION_ID);
+        child.put("inheritsFrom", neoId);
+        child.put("type", "release");
+        return child;
+    }
+
+    /** Create the child version that inherits from NeoForge. */
+    protected void writeChildVersion(Path mcDir, String neoId, Installer.Log log) throws IOException {
+        Path childJson = childVersionJson(mcDir);
+        Files.createDirectories(childJson.getParent());
+        Flight.ConfigWrite jfr = new Flight.ConfigWrite();
+        jfr.begin();
+        writeAtomically(childJson, JSON.writerWithDefaultPrettyPrinter().writeValueAsBytes(childVersionNode(neoId)));
+        Flight.commit(jfr, "child-version", childJson);
+        log.line("Wrote " + childJson);
+    }
+
+    /** Replace {@code file} in one step (temp file + atomic move): readers, or an abort, never see it half written. */
+    protected static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "." + file.getFileName() + "-", ".tmp");
+        try {
+            Files.write(tmp, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+            ModFetcher.moveIntoPlace(tmp, file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
     protected Path detectLauncherProfilesFile(Path mcDir) throws IOException {
         Path ms = mcDir.resolve("launcher_profiles_microsoft_store.json");
         Path std = mcDir.resolve("launcher_profiles.json");
@@ -169,7 +381,7 @@ public class Main {
         }
         for (String k : toRemove) profiles.remove(k);
         if (!toRemove.isEmpty()) {
-            JSON.writerWithDefaultPrettyPrinter().writeValue(profilesPath.toFile(), root);
+            writeAtomically(profilesPath, JSON.writerWithDefaultPrettyPrinter().writeValueAsBytes(root));
             log.line("Removed " + toRemove.size() + " NeoForge launcher installation(s).");
         } else {
             log.line("No extra NeoForge installations to remove.");
@@ -185,7 +397,7 @@ public class Main {
         mine.put("name", PROFILE_NAME);
         mine.put("type", "custom");
         String now = DateTimeFormatter.ISO_INSTANT.format(Instant.now());
-        mine.put("created", now);
+        if (!mine.hasNonNull("created")) mine.put("created", now); // keep the original install date
         mine.put("lastUsed", now);
         mine.put("lastVersionId", CHILD_VERSION_ID);
         mine.put("gameDir", gameDir.toAbsolutePath().toString());
@@ -193,10 +405,29 @@ public class Main {
         String iconDataUri = readIconDataUri();
         if (iconDataUri != null) mine.put("icon", iconDataUri);
 
-        JSON.writerWithDefaultPrettyPrinter().writeValue(profilesPath.toFile(), root);
+        Flight.ConfigWrite jfr = new Flight.ConfigWrite();
+        jfr.begin();
+        writeAtomically(profilesPath, JSON.writerWithDefaultPrettyPrinter().writeValueAsBytes(root));
+        Flight.commit(jfr, "profiles", profilesPath);
         log.line("Updated " + profilesPath.getFileName() + " with HFD profile.");
     }
 
+    /** True if our profile already matches what {@link #upsertHfdProfile} writes and no profile still uses {@code neoId}. */
+    protected boolean hfdProfileCurrent(Path profilesPath, Path gameDir, String neoId) throws IOException {
+        if (!Files.isRegularFile(profilesPath)) return false;
+        JsonNode profiles = readJsonObject(profilesPath).path("profiles");
+        for (JsonNode prof : profiles) {
+            if (neoId != null && neoId.equals(prof.path("lastVersionId").asText())) return false;
+        }
+        JsonNode mine = profiles.path(CHILD_VERSION_ID);
+        String icon = readIconDataUri();
+        return PROFILE_NAME.equals(mine.path("name").asText())
+                && "custom".equals(mine.path("type").asText())
+                && CHILD_VERSION_ID.equals(mine.path("lastVersionId").asText())
+                && gameDir.toAbsolutePath().toString().equals(mine.path("gameDir").asText())
+                && (icon == null || icon.equals(mine.path("icon").asText()));
+    }
+
     protected ObjectNode readJsonObject(Path file) throws IOException {
         return file.toFile().exists()
                 ? (ObjectNode) JSON.readTree(file.toFile())
@@ -219,8 +450,22 @@ public class Main {
 
     protected void writeServersDat(Path serversDat, String name, String ip, boolean acceptTextures) throws IOException {
         Files.createDirectories(serversDat.getParent());
-        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
-                Files.newOutputStream(serversDat, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)))) {
+        Flight.ConfigWrite jfr = new Flight.ConfigWrite();
+        jfr.begin();
+        writeAtomically(serversDat, serversDatBytes(name, ip, acceptTextures));
+        Flight.commit(jfr, "servers.dat", serversDat);
+    }
+
+    /** True if {@code serversDat} already holds exactly what {@link #writeServersDat} would write. */
+    protected boolean serversDatCurrent(Path serversDat, String name, String ip, boolean acceptTextures) throws IOException {
+        byte[] want = serversDatBytes(name, ip, acceptTextures);
+        return Files.isRegularFile(serversDat) && Files.size(serversDat) == want.length
+                && Arrays.equals(Files.readAllBytes(serversDat), want);
+    }
+
+    protected byte[] serversDatBytes(String name, String ip, boolean acceptTextures) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
 
             // Root TAG_Compound ("")
             out.writeByte(0x0A);                 // TAG_Compound
@@ -240,6 +485,7 @@ public class Main {
             // end root compound
             out.writeByte(0x00);                 // TAG_End
         }
+        return bytes.toByteArray();
     }
 
     protected void writeNamedTagHeader(DataOutputStream out, byte type, String name) throws IOException {
@@ -1,9 +1,13 @@
 package net.anatomyworld.hfd;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.io.FilterInputStream;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.*;
 import java.nio.file.*;
@@ -11,6 +15,10 @@ import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 public class ModFetcher extends Main {
@@ -23,34 +31,273 @@ public class ModFetcher extends Main {
     // Modrinth asks for a unique, identifying UA (include contact if possible).
     private static final String UA = "HFD-Installer/1.3 (+https://harambefinaldestination.world)";
 
+    // -Dhfd.modrinth.api=http://127.0.0.1:port points the Modrinth strategies at a mirror/mock
+    private static final String DEFAULT_API = "https://api.modrinth.com";
+
+    static String apiBase() { return System.getProperty("hfd.modrinth.api", DEFAULT_API); }
+
     /** Top-level: read /embedded/mods.fetch.json and fetch everything. */
     public void fetchAll(Path modsDir, String mcVersion, Installer.Log log) {
-        List<ModRule> rules = loadRulesFromConfig(mcVersion, log);
+        fetchAll(modsDir, mcVersion, readEmbeddedConfig(log), log);
+    }
+
+    /** Fetch everything described by a mods.fetch.json-shaped array (null/empty = nothing). */
+    void fetchAll(Path modsDir, String mcVersion, JsonNode config, Installer.Log log) {
+        List<ModRule> rules = parseRules(config, mcVersion, log);
         if (rules.isEmpty()) {
             log.line("(No mods.fetch.json found — skipping external mods)");
             return;
         }
+        Map<String, Bundled> bundle = loadBundle(config, mcVersion, log);
+        Map<String, Path> placedByRule = new LinkedHashMap<>();
 
+        try {
+            for (ModRule rule : rules) {
+                Cancellation.current().check();
+                try {
+                    Path placed = null;
+                    Bundled b = bundle.get(rule.displayName);
+                    if (b != null) {
+                        try {
+                            placed = placeBundled(b, modsDir, log);
+                            log.line(rule.displayName + " placed (bundled): " + placed.getFileName());
+                        } catch (IOException ex) {
+                            log.line(rule.displayName + " bundled copy unusable (" + ex.getMessage() + "), fetching online…");
+                        }
+                    }
+                    if (placed == null) {
+                        placed = fetchPrefetched(rule, modsDir, log);
+                        if (placed == null) placed = rule.fetchTo(modsDir, log);
+                        log.line(rule.displayName + " placed: " + placed.getFileName());
+                    }
+                    placedByRule.put(rule.displayName, placed);
+                    // optional cleanup per rule, after placing: an up-to-date file is kept as is, and
+                    // a rule that couldn't be placed leaves the old version where it was
+                    for (Pattern p : rule.cleanupPatterns) {
+                        deleteMatching(modsDir, p, placed, log);
+                    }
+                } catch (Exception ex) {
+                    if (Cancellation.isCancel(ex)) throw new CancellationException("external mods cancelled");
+                    log.line(rule.displayName + " download failed: " + ex.getMessage());
+                    log.event(new InstallEvent.Error(rule.displayName, String.valueOf(ex.getMessage())));
+                }
+            }
+            writeState(modsDir, mcVersion, config, rules.size() == placedByRule.size() ? placedByRule : null, log);
+        } finally {
+            PREFETCHED.clear(); // handed over: a later run resolves afresh
+            endRun(log);
+            // also on cancel: whatever was placed or deleted so far needn't be hashed again
+            try { ModIndex.of(modsDir).save(); } catch (IOException e) { log.line("Could not save mods index: " + e.getMessage()); }
+        }
+        HostStats.shared().save();
+    }
+
+    /**
+     * Forget this run's shared answers (and unreachable LAN peers) so the next run (a later repair,
+     * say) asks afresh. Called by every top-level user of {@link #getJson}/{@link #safeDownloadTo}:
+     * fetchAll, verify, prefetch.
+     */
+    static void endRun(Installer.Log log) {
+        int reused = JSON_CALLS.sharedCount() + DOWNLOADS.sharedCount();
+        if (reused > 0) log.line("Reused " + reused + " identical request(s) within this run");
+        JSON_CALLS.clear();
+        DOWNLOADS.clear();
+        LanPeer.forgetUnreachable();
+    }
+
+    // ----------- Install state (cheap up-to-date checks) ------------
+
+    /** Online resolutions are trusted this long before a plan re-checks Modrinth. */
+    static final Duration RESOLVE_TTL = Duration.ofHours(6);
+
+    private static Path stateFile(Path modsDir) {
+        Path gameDir = modsDir.getParent() != null ? modsDir.getParent() : modsDir;
+        return gameDir.resolve(".hfd").resolve("external-state.json");
+    }
+
+    /** Remember what every rule placed (null = some rule failed: forget, so the next plan re-fetches). */
+    private static void writeState(Path modsDir, String mcVersion, JsonNode config, Map<String, Path> placed, Installer.Log log) {
+        Path file = stateFile(modsDir);
+        try {
+            if (placed == null) { Files.deleteIfExists(file); return; }
+            ModIndex index = ModIndex.of(modsDir);
+            ObjectNode root = JSON.createObjectNode();
+            root.put("mc", mcVersion);
+            root.put("configSha256", configFingerprint(config));
+            root.put("resolvedAt", Instant.now().toString());
+            ObjectNode mods = root.putObject("mods");
+            for (var e : placed.entrySet()) {
+                ObjectNode n = mods.putObject(e.getKey());
+                n.put("filename", e.getValue().getFileName().toString());
+                n.put("sha512", index.record(e.getValue()).sha512());
+            }
+            Files.createDirectories(file.getParent());
+            JSON.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), root);
+        } catch (IOException e) {
+            log.line("Could not record external mod state: " + e.getMessage());
+        }
+    }
+
+    /** Number of rules in the embedded config (what fetchAll will go through). */
+    int ruleCount(String mcVersion, Installer.Log log) {
+        return parseRules(readEmbeddedConfig(log), mcVersion, log).size();
+    }
+
+    /**
+     * What {@link #fetchAll} would change, from local checks only: empty when every rule's file is
+     * still the one we placed (and, for online-resolved rules, the resolution is younger than
+     * {@link #RESOLVE_TTL}). Never touches the network.
+     */
+    List<String> plan(Path modsDir, String mcVersion, Installer.Log log) {
+        JsonNode config = readEmbeddedConfig(log);
+        List<ModRule> rules = parseRules(config, mcVersion, log);
+        if (rules.isEmpty()) return List.of();
+        if (refreshRequested()) return List.of("refresh requested");
+
+        JsonNode state;
+        try {
+            Path file = stateFile(modsDir);
+            if (!Files.isRegularFile(file)) return List.of("no record of a previous fetch");
+            state = JSON.readTree(file.toFile());
+        } catch (IOException e) {
+            return List.of("unreadable fetch record");
+        }
+        if (!mcVersion.equals(state.path("mc").asText()) || !configFingerprint(config).equals(state.path("configSha256").asText())) {
+            return List.of("mods.fetch.json changed");
+        }
+        Instant resolvedAt;
+        try { resolvedAt = Instant.parse(state.path("resolvedAt").asText()); } catch (RuntimeException e) { resolvedAt = Instant.EPOCH; }
+        boolean fresh = resolvedAt.plus(RESOLVE_TTL).isAfter(Instant.now());
+
+        Map<String, Bundled> bundle = loadBundle(config, mcVersion, log);
+        ModIndex index = ModIndex.of(modsDir);
+        List<String> out = new ArrayList<>();
         for (ModRule rule : rules) {
+            JsonNode had = state.path("mods").path(rule.displayName);
+            Bundled b = bundle.get(rule.displayName);
+            String sha = had.path("sha512").asText("");
+            if (had.isMissingNode()) out.add(rule.displayName + ": not fetched yet");
+            else if (b != null && !b.sha512().equalsIgnoreCase(sha)) out.add(rule.displayName + ": bundled version changed");
+            else if (b == null && !fresh) out.add(rule.displayName + ": check for updates");
+            else if (!index.isCurrent(modsDir.resolve(had.path("filename").asText()), sha)) out.add(rule.displayName + ": missing or modified");
+        }
+        return out;
+    }
+
+    /** Resolve every configured rule to its file without downloading (rules that fail are skipped). */
+    List<Resolved> resolveAll(String mcVersion, Installer.Log log) {
+        return resolveAll(mcVersion, readEmbeddedConfig(log), log);
+    }
+
+    /** As above for a given config; bundled rules resolve from the bundle manifest (no network). */
+    List<Resolved> resolveAll(String mcVersion, JsonNode config, Installer.Log log) {
+        Map<String, Bundled> bundle = loadBundle(config, mcVersion, log);
+        List<Resolved> out = new ArrayList<>();
+        for (ModRule rule : parseRules(config, mcVersion, log)) {
+            Bundled b = bundle.get(rule.displayName);
+            if (b != null) {
+                out.add(new Resolved(rule.displayName, new FileInfo(b.url(), b.filename(), b.sha512()), true, List.of(b.url())));
+                continue;
+            }
             try {
-                // optional cleanup per rule
-                for (Pattern p : rule.cleanupPatterns) {
-                    deleteMatching(modsDir, p, log);
-                }
-                Path placed = rule.fetchTo(modsDir, log);
-                log.line(rule.displayName + " placed: " + placed.getFileName());
-            } catch (Exception ex) {
-                log.line(rule.displayName + " download failed: " + ex.getMessage());
+                FileInfo f = rule.resolve(log);
+                out.add(new Resolved(rule.displayName, f, false, rule.candidates(f)));
+            } catch (IOException ex) {
+                log.line(rule.displayName + " could not be resolved: " + ex.getMessage());
+                log.event(new InstallEvent.Error(rule.displayName, String.valueOf(ex.getMessage())));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * The file the prefetch resolved for {@code rule} (and likely stored), from any of its mirrors;
+     * null if there is none or it can't be had, so the caller walks the rule's strategies instead.
+     */
+    private static Path fetchPrefetched(ModRule rule, Path modsDir, Installer.Log log) throws Exception {
+        FileInfo pre = prefetched(rule.displayName);
+        if (pre == null) return null;
+        try {
+            return safeDownloadTo(rule.candidates(pre), modsDir.resolve(pre.filename()), pre.sha512(), log);
+        } catch (Exception ex) {
+            if (Cancellation.isCancel(ex)) throw ex;
+            log.line(rule.displayName + " prefetched file unavailable (" + ex.getMessage() + "), resolving again…");
+            return null;
+        }
+    }
+
+    /** Download (or link from the store) one resolved file into {@code modsDir}. */
+    Path fetchResolved(Resolved r, Path modsDir, Installer.Log log) throws Exception {
+        if (r.bundled()) {
+            try {
+                return placeBundled(new Bundled(r.displayName(), r.file().filename(), r.file().sha512(), -1, r.file().url()), modsDir, log);
+            } catch (IOException ex) {
+                log.line(r.displayName() + " bundled copy unusable (" + ex.getMessage() + "), fetching online…");
             }
         }
+        return safeDownloadTo(r.urls(), modsDir.resolve(r.file().filename()), r.file().sha512(), log);
+    }
+
+    // ----------- Prefetch (see Prefetcher) ------------
+
+    private record Prefetched(FileInfo file, Instant at) {}
+
+    /**
+     * Resolutions made by this process's prefetch; the next fetchAll uses them instead of asking
+     * Modrinth again, unless they are older than {@link #RESOLVE_TTL} (the window sat open).
+     */
+    private static final Map<String, Prefetched> PREFETCHED = new ConcurrentHashMap<>();
+
+    private static FileInfo prefetched(String displayName) {
+        Prefetched p = PREFETCHED.get(displayName);
+        return p != null && p.at().plus(RESOLVE_TTL).isAfter(Instant.now()) ? p.file() : null;
+    }
+
+    /** Download one resolved file into the artifact store only (never into a game dir). */
+    void prefetch(Resolved r, Installer.Log log) throws Exception {
+        if (r.bundled()) return; // already inside the installer
+        PREFETCHED.put(r.displayName(), new Prefetched(r.file(), Instant.now()));
+        String sha = r.file().sha512();
+        if (sha == null || sha.isBlank()) return; // can't address it in the store before downloading
+        ArtifactStore store = ArtifactStore.shared();
+        if (store.find(sha) != null) return;
+
+        Files.createDirectories(store.root());
+        List<String> urls = new ArrayList<>(LanPeer.objectUrls(sha));
+        urls.addAll(HostStats.shared().rank(r.urls()));
+        IOException last = null;
+        for (String url : urls) {
+            // speculative: yields to anything the user is actually waiting for
+            Path tmp = null;
+            try {
+                tmp = timedGet(url, Bandwidth.Priority.OPTIONAL, 1, null, in -> writeTemp(in, store.root().resolve(r.file().filename())));
+                verifyFrom(url, tmp, sha);
+                store.ingest(tmp, sha);
+                log.line("Prefetched " + r.file().filename());
+                return;
+            } catch (IOException e) {
+                last = e; // LAN peer miss: try the next source
+                if (LanPeer.isPeerUrl(url)) LanPeer.failed(url, e);
+            } finally {
+                if (tmp != null) Files.deleteIfExists(tmp);
+            }
+        }
+        throw last;
     }
 
     // ----------- Config ------------
 
-    private List<ModRule> loadRulesFromConfig(String mcVersion, Installer.Log log) {
+    private static JsonNode readEmbeddedConfig(Installer.Log log) {
         try (InputStream in = Main.class.getResourceAsStream("/embedded/mods.fetch.json")) {
-            if (in == null) return List.of();
-            JsonNode arr = JSON.readTree(in);
+            return in == null ? null : JSON.readTree(in);
+        } catch (Exception e) {
+            log.line("Failed to read mods.fetch.json: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private List<ModRule> parseRules(JsonNode arr, String mcVersion, Installer.Log log) {
+        try {
             if (arr == null || !arr.isArray() || arr.isEmpty()) return List.of();
 
             List<ModRule> out = new ArrayList<>();
@@ -100,15 +347,135 @@ public class ModFetcher extends Main {
         return (s == null) ? null : s.replace("${mc}", mc);
     }
 
+    // ----------- Bundled (resolved at build time) ------------
+
+    /** Where the build puts pre-resolved external mods (see ExternalBundler / bundleExternalMods). */
+    static final String BUNDLE_DIR = "/embedded/external/";
+
+    private record Bundled(String displayName, String filename, String sha512, long size, String url) {}
+
+    /** -Dhfd.refreshMods=true (or --refresh-mods) ignores the bundle and resolves everything online. */
+    static boolean refreshRequested() { return Boolean.getBoolean("hfd.refreshMods"); }
+
+    /** Bundled mods by rule name; empty if there is no bundle, it was built from another config/MC version, or a refresh was asked for. */
+    private static Map<String, Bundled> loadBundle(JsonNode config, String mcVersion, Installer.Log log) {
+        if (refreshRequested() || config == null) return Map.of();
+        try (InputStream in = Main.class.getResourceAsStream(BUNDLE_DIR + "manifest.json")) {
+            if (in == null) return Map.of();
+            JsonNode m = JSON.readTree(in);
+            if (!mcVersion.equals(m.path("mc").asText()) || !configFingerprint(config).equals(m.path("configSha256").asText())) {
+                log.line("(Bundled external mods were built for a different config — resolving online)");
+                return Map.of();
+            }
+            Map<String, Bundled> out = new HashMap<>();
+            for (JsonNode n : m.path("mods")) {
+                out.put(n.path("name").asText(), new Bundled(n.path("name").asText(), n.path("filename").asText(),
+                        n.path("sha512").asText(), n.path("size").asLong(-1), n.path("url").asText(null)));
+            }
+            return out;
+        } catch (IOException e) {
+            log.line("Could not read bundled mods manifest: " + e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /** Place a bundled jar (from the installer's own resources) and check its SHA-512. */
+    private static Path placeBundled(Bundled b, Path modsDir, Installer.Log log) throws IOException {
+        Path out = modsDir.resolve(b.filename());
+        ModIndex index = ModIndex.of(modsDir);
+        if (Files.isRegularFile(out)) {
+            ModIndex.Entry have = index.lookup(out);
+            if (have != null && have.sha512().equalsIgnoreCase(b.sha512())) {
+                log.line("Up to date: " + b.filename());
+                log.event(new InstallEvent.CacheHit(b.filename()));
+                return out;
+            }
+        }
+        String res = BUNDLE_DIR + b.filename() + ".bin";
+        ArtifactStore.Source src;
+        SolidPayload solid = SolidPayload.get();
+        if (Main.class.getResource(res) != null) {
+            src = () -> Main.class.getResourceAsStream(res);
+        } else if (solid != null && solid.contains(res.substring(1))) {
+            src = EmbeddedPayload.solidSource(solid, res.substring(1)); // -PpayloadFormat=xz build
+        } else {
+            throw new IOException("missing " + res);
+        }
+        Files.createDirectories(modsDir);
+        Flight.Extract extract = new Flight.Extract();
+        extract.begin();
+        long n = ArtifactStore.placeFrom(src, out);
+        Flight.commit(extract, out, "bundled");
+        Flight.Verify verify = new Flight.Verify();
+        verify.begin();
+        ModIndex.Entry got = index.record(out);
+        boolean match = got.sha512().equalsIgnoreCase(b.sha512());
+        Flight.commit(verify, out, match);
+        if (!match) {
+            Files.deleteIfExists(out);
+            index.remove(out);
+            throw new IOException("SHA-512 mismatch for bundled " + b.filename());
+        }
+        log.event(new InstallEvent.FilePlaced(out, n, "bundled"));
+        return out;
+    }
+
+    /** Stable SHA-256 of a config tree, so a bundle is only used for the config it was built from. */
+    static String configFingerprint(JsonNode config) {
+        try {
+            byte[] canon = JSON.writeValueAsBytes(config);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canon));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The embedded mods.fetch.json (null if absent/unreadable). */
+    static JsonNode embeddedConfig(Installer.Log log) { return readEmbeddedConfig(log); }
+
     // ----------- Model ------------
 
+    /**
+     * One rule resolved to a concrete file (no download yet); {@code bundled} = shipped inside the
+     * installer, {@code urls} = every source of these bytes (the file's own URL first, then mirrors).
+     */
+    record Resolved(String displayName, FileInfo file, boolean bundled, List<String> urls) {}
+
     private record ModRule(String displayName, List<Pattern> cleanupPatterns, List<Strategy> pipeline) {
         Path fetchTo(Path modsDir, Installer.Log log) throws Exception {
             for (Strategy s : pipeline) {
                 try {
-                    Path p = s.tryFetch(modsDir, log);
-                    if (p != null) return p;
+                    FileInfo f = s.resolve(log);
+                    if (f != null) return safeDownloadTo(candidates(f), modsDir.resolve(f.filename), f.sha512, log);
                 } catch (Exception ex) {
+                    if (Cancellation.isCancel(ex)) throw new CancellationException("cancelled");
+                    log.line(displayName + " strategy failed (" + s.name() + "): " + ex.getMessage());
+                }
+            }
+            throw new IOException("No valid source found for " + displayName);
+        }
+
+        /**
+         * {@code f}'s URL plus every direct source of this rule pinned to the same SHA-512 (mirrors).
+         * Unpinned files get no alternatives: without a hash we can't know the bytes are the same.
+         */
+        List<String> candidates(FileInfo f) {
+            List<String> urls = new ArrayList<>();
+            urls.add(f.url);
+            if (f.sha512 == null || f.sha512.isBlank()) return urls;
+            for (Strategy s : pipeline) {
+                if (s instanceof Direct d && f.sha512.equalsIgnoreCase(d.sha512) && !urls.contains(d.url)) urls.add(d.url);
+            }
+            return urls;
+        }
+
+        FileInfo resolve(Installer.Log log) throws IOException {
+            for (Strategy s : pipeline) {
+                try {
+                    FileInfo f = s.resolve(log);
+                    if (f != null) return f;
+                } catch (Exception ex) {
+                    if (Cancellation.isCancel(ex)) throw new CancellationException("cancelled");
                     log.line(displayName + " strategy failed (" + s.name() + "): " + ex.getMessage());
                 }
             }
@@ -118,7 +485,8 @@ public class ModFetcher extends Main {
 
     private interface Strategy {
         String name();
-        Path tryFetch(Path modsDir, Installer.Log log) throws Exception;
+        /** Work out which file this source would deliver (metadata only). */
+        FileInfo resolve(Installer.Log log) throws Exception;
 
         static Strategy modrinthExact(String slug, String versionNumber, String requiredLoader) {
             return new ModrinthExact(slug, versionNumber, requiredLoader);
@@ -141,15 +509,14 @@ public class ModFetcher extends Main {
         }
         public String name() { return "modrinthExact(" + versionNumber + ")"; }
 
-        @Override public Path tryFetch(Path modsDir, Installer.Log log) throws Exception {
-            JsonNode node = getJson("https://api.modrinth.com/v2/project/" + slug + "/version/" + versionNumber);
-            if (!arrayContainsIgnoreCase(node.withArray("loaders"), requiredLoader))
+        @Override public FileInfo resolve(Installer.Log log) throws Exception {
+            JsonNode node = getJson(apiBase() + "/v2/project/" + slug + "/version/" + versionNumber);
+            if (!arrayContainsIgnoreCase(node.path("loaders"), requiredLoader))
                 throw new IOException("Not the required loader for version " + versionNumber);
 
-            FileInfo f = chooseNeoForgeFile(node.withArray("files"));
+            FileInfo f = chooseNeoForgeFile(node.path("files"));
             if (f == null) throw new IOException("No NeoForge JAR in exact version: " + versionNumber);
-
-            return safeDownloadTo(f.url, modsDir.resolve(f.filename), f.sha512, log);
+            return f;
         }
     }
 
@@ -161,27 +528,19 @@ public class ModFetcher extends Main {
         }
         public String name() { return "modrinthFilteredLatest(" + loader + "," + mc + ")"; }
 
-        @Override public Path tryFetch(Path modsDir, Installer.Log log) throws Exception {
-            String url = "https://api.modrinth.com/v2/project/" + slug + "/version"
+        @Override public FileInfo resolve(Installer.Log log) throws Exception {
+            String url = apiBase() + "/v2/project/" + slug + "/version"
                     + "?loaders=%5B%22" + enc(loader) + "%22%5D"
                     + "&game_versions=%5B%22" + enc(mc) + "%22%5D";
             JsonNode arr = getJson(url);
             if (!arr.isArray() || arr.isEmpty()) throw new IOException("No results");
 
-            JsonNode newest = null;
-            for (JsonNode v : arr) {
-                if (!arrayContainsIgnoreCase(v.withArray("loaders"), requiredLoader)) continue;
-                if (newest == null || Instant.parse(v.get("date_published").asText())
-                        .isAfter(Instant.parse(newest.get("date_published").asText()))) {
-                    newest = v;
-                }
-            }
+            JsonNode newest = newestWithLoader(arr, requiredLoader);
             if (newest == null) throw new IOException("No version with loader " + requiredLoader);
 
-            FileInfo f = chooseNeoForgeFile(newest.withArray("files"));
+            FileInfo f = chooseNeoForgeFile(newest.path("files"));
             if (f == null) throw new IOException("No NeoForge JAR in files[]");
-
-            return safeDownloadTo(f.url, modsDir.resolve(f.filename), f.sha512, log);
+            return f;
         }
     }
 
@@ -193,85 +552,307 @@ public class ModFetcher extends Main {
         }
         public String name() { return "direct(" + url + ")"; }
 
-        @Override public Path tryFetch(Path modsDir, Installer.Log log) throws Exception {
+        @Override public FileInfo resolve(Installer.Log log) throws Exception {
             String fn = (filename == null || filename.isBlank())
                     ? lastSegment(URI.create(url).getPath()) : filename;
             if (expectContains != null && !fn.toLowerCase(Locale.ROOT).contains(expectContains.toLowerCase(Locale.ROOT)))
                 throw new IOException("Unexpected filename: " + fn);
-
-            return safeDownloadTo(url, modsDir.resolve(fn), sha512, log);
+            return new FileInfo(url, fn, sha512);
         }
     }
 
     // ----------- HTTP / IO (robust writes) -----------
 
+    /** API answers and downloads shared by identical requests within one run (see {@link #fetchAll}). */
+    private static final SingleFlight<String, JsonNode> JSON_CALLS = new SingleFlight<>();
+    private static final SingleFlight<String, Path> DOWNLOADS = new SingleFlight<>();
+
+    /**
+     * One parsed answer is handed to every strategy asking for {@code url} in this run, so callers
+     * must only read it ({@code path}/{@code get}, never {@code with}/{@code withArray}).
+     */
     private static JsonNode getJson(String url) throws IOException, InterruptedException {
+        return rethrow(() -> JSON_CALLS.get(url, () -> timedGet(url, Bandwidth.Priority.METADATA, 1, null, JSON::readTree)));
+    }
+
+    private static <T> T rethrow(SingleFlight.Loader<T> call) throws IOException, InterruptedException {
+        try {
+            return call.load();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private interface BodyReader<T> { T read(InputStream body) throws IOException; }
+
+    /** In-flight progress granularity (events are cheap, but not free). */
+    private static final long PROGRESS_STEP = 256 * 1024;
+
+    /**
+     * Streaming GET: the body is paced by {@link Bandwidth} at {@code priority} and consumed by
+     * {@code reader}; time to first byte, size and total time (or the failure) go to {@link HostStats}.
+     * Non-2xx answers throw with the status and the start of the body. With a {@code log}, emits
+     * in-flight {@link InstallEvent.DownloadProgress} every {@link #PROGRESS_STEP} bytes.
+     * Each request is also a {@link Flight.Http} event ({@code attempt} = retry round, 1-based).
+     */
+    private static <T> T timedGet(String url, Bandwidth.Priority priority, int attempt, Installer.Log log, BodyReader<T> reader)
+            throws IOException, InterruptedException {
         HttpRequest req = HttpRequest.newBuilder(URI.create(url)).header("User-Agent", UA).GET().build();
-        HttpResponse<String> res = HTTP.send(req, HttpResponse.BodyHandlers.ofString());
-        if (res.statusCode() / 100 != 2)
-            throw new IOException("HTTP " + res.statusCode() + " @ " + url + ": " + res.body());
-        return JSON.readTree(res.body());
+        Flight.Http jfr = new Flight.Http();
+        jfr.begin();
+        long t0 = System.nanoTime();
+        long[] firstByte = {0};
+        long[] count = {0};
+        int status = 0;
+        String error = null;
+        try {
+            // async so an abort can cancel the exchange itself, not just stop waiting for it
+            CompletableFuture<HttpResponse<InputStream>> pending = HTTP.sendAsync(req, info -> {
+                firstByte[0] = System.nanoTime() - t0;
+                return HttpResponse.BodySubscribers.ofInputStream();
+            });
+            HttpResponse<InputStream> res;
+            Cancellation.Hook abortExchange = Cancellation.current().onCancel(() -> pending.cancel(true));
+            try {
+                res = pending.get();
+            } catch (InterruptedException e) {
+                pending.cancel(true);
+                throw e;
+            } catch (CancellationException e) {
+                throw new InterruptedIOException("request to " + url + " cancelled");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                throw new IOException(String.valueOf(e.getCause()), e.getCause());
+            } finally {
+                abortExchange.close();
+            }
+            status = res.statusCode();
+            long total = res.headers().firstValueAsLong("content-length").orElse(-1);
+            Cancellation.Hook closeBody = Cancellation.current().onCancel(() -> closeQuietly(res.body()));
+            try (InputStream body = new FilterInputStream(Bandwidth.shared().throttle(res.body(), priority)) {
+                private long reported;
+                @Override public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        count[0] += n;
+                        if (log != null && count[0] - reported >= PROGRESS_STEP) {
+                            reported = count[0];
+                            log.event(new InstallEvent.DownloadProgress(url, count[0], total, false));
+                        }
+                    }
+                    return n;
+                }
+            }) {
+                if (res.statusCode() / 100 != 2) {
+                    String excerpt = new String(body.readNBytes(512), java.nio.charset.StandardCharsets.UTF_8);
+                    throw new IOException("HTTP " + res.statusCode() + " @ " + url + ": " + excerpt);
+                }
+                T out = reader.read(body);
+                HostStats.shared().success(url, firstByte[0], count[0], System.nanoTime() - t0);
+                return out;
+            } finally {
+                closeBody.close();
+            }
+        } catch (IOException e) {
+            if (!Cancellation.isCancel(e)) HostStats.shared().failure(url);
+            error = e.getMessage();
+            throw e;
+        } finally {
+            if (jfr.shouldCommit()) {
+                jfr.host = URI.create(url).getHost();
+                jfr.url = url;
+                jfr.priority = priority.name();
+                jfr.attempt = attempt;
+                jfr.status = status;
+                jfr.bytes = count[0];
+                jfr.error = error;
+                jfr.commit();
+            }
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try { in.close(); } catch (IOException ignored) {}
     }
 
-    /** Download to memory → write temp → atomic move. Retries x3. */
-    private static Path safeDownloadTo(String url, Path finalPath, String expectedSha512, Installer.Log log)
+    /**
+     * Stream to a temp file → verify → artifact store / atomic move. Retries x3. {@code urls} are
+     * sources of the same file (same SHA-512), tried best-first by {@link HostStats}.
+     * Two rules landing on the same file in one run share the download; a result since deleted
+     * (a later rule's cleanup) is fetched again.
+     */
+    private static Path safeDownloadTo(List<String> urls, Path finalPath, String expectedSha512, Installer.Log log)
+            throws Exception {
+        String key = finalPath.toAbsolutePath().normalize() + "|" + (expectedSha512 == null ? String.join(" ", urls) : expectedSha512.toLowerCase(Locale.ROOT));
+        return DOWNLOADS.get(key, () -> download(urls, finalPath, expectedSha512, log), Files::isRegularFile);
+    }
+
+    private static Path download(List<String> urls, Path finalPath, String expectedSha512, Installer.Log log)
             throws Exception {
         Files.createDirectories(finalPath.getParent());
         String base = finalPath.getFileName().toString();
 
-        IOException last = null;
-        for (int attempt = 1; attempt <= 3; attempt++) {
-            Path tmp = null;
-            try {
-                HttpRequest req = HttpRequest.newBuilder(URI.create(url)).header("User-Agent", UA).GET().build();
-                HttpResponse<byte[]> res = HTTP.send(req, HttpResponse.BodyHandlers.ofByteArray());
-                if (res.statusCode() / 100 != 2)
-                    throw new IOException("Download HTTP " + res.statusCode() + " @ " + url);
+        // already installed? (index re-hashes only if size/mtime changed)
+        ModIndex index = ModIndex.of(finalPath.getParent());
+        if (expectedSha512 != null && !expectedSha512.isBlank() && Files.isRegularFile(finalPath)) {
+            ModIndex.Entry have = index.lookup(finalPath);
+            if (have != null && have.sha512().equalsIgnoreCase(expectedSha512)) {
+                log.line("Up to date: " + base);
+                log.event(new InstallEvent.CacheHit(base));
+                return finalPath;
+            }
+        }
 
-                // temp in target dir; if blocked, use system temp
-                try {
-                    tmp = Files.createTempFile(finalPath.getParent(), "dl-", ".tmp");
-                    Files.write(tmp, res.body(), StandardOpenOption.TRUNCATE_EXISTING);
-                } catch (IOException ioInMods) {
-                    tmp = Files.createTempFile(Paths.get(System.getProperty("java.io.tmpdir")), "dl-", ".tmp");
-                    Files.write(tmp, res.body(), StandardOpenOption.TRUNCATE_EXISTING);
+        // in the machine-wide store from another instance / earlier run? link it, no network
+        if (expectedSha512 != null && !expectedSha512.isBlank()) {
+            try {
+                ArtifactStore store = ArtifactStore.shared();
+                if (store.find(expectedSha512) != null) {
+                    Flight.Extract jfr = new Flight.Extract();
+                    jfr.begin();
+                    ArtifactStore.Placement how = store.place(expectedSha512, finalPath);
+                    Flight.commit(jfr, finalPath, "store");
+                    log.line("From artifact store (" + how.name().toLowerCase(Locale.ROOT) + "): " + base);
+                    log.event(new InstallEvent.CacheHit(base));
+                    log.event(new InstallEvent.FilePlaced(finalPath, Files.size(finalPath), "store"));
+                    try { index.record(finalPath); } catch (IOException e) { log.line("Could not index " + base + ": " + e.getMessage()); }
+                    return finalPath;
                 }
+            } catch (IOException storeUnavailable) {
+                log.line("Artifact store unavailable (" + storeUnavailable.getMessage() + "), downloading.");
+            }
+        }
 
-                if (expectedSha512 != null && !expectedSha512.isBlank()) verifySha512(tmp, expectedSha512);
-
+        // LAN peers first (install parties), then equivalent (same-hash) sources fastest-first;
+        // every one is tried before backing off, a peer that doesn't have the file only once
+        List<String> ranked = new ArrayList<>(LanPeer.objectUrls(expectedSha512));
+        ranked.addAll(HostStats.shared().rank(urls));
+        Set<String> missed = new HashSet<>();
+        IOException last = null;
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            for (String url : ranked) {
+                if (missed.contains(url) || LanPeer.isUnreachable(url)) continue;
+                Path tmp = null;
                 try {
-                    Files.move(tmp, finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-                } catch (AtomicMoveNotSupportedException e) {
-                    Files.move(tmp, finalPath, StandardCopyOption.REPLACE_EXISTING);
+                    tmp = timedGet(url, Bandwidth.Priority.CRITICAL, attempt, log, in -> writeTemp(in, finalPath));
+                    long size = Files.size(tmp);
+                    log.event(new InstallEvent.DownloadProgress(url, size, size, true));
+
+                    if (expectedSha512 != null && !expectedSha512.isBlank()) verifyFrom(url, tmp, expectedSha512);
+                    placeVerified(tmp, finalPath, expectedSha512);
+                    log.event(new InstallEvent.FilePlaced(finalPath, size, "download"));
+                    try { index.record(finalPath); } catch (IOException e) { log.line("Could not index " + base + ": " + e.getMessage()); }
+                    return finalPath;
+                } catch (IOException io) {
+                    if (Cancellation.isCancel(io)) throw io; // aborted: no retry, no demerit for the host
+                    last = io;
+                    if (LanPeer.isPeerUrl(url)) {
+                        missed.add(url);
+                        if (LanPeer.failed(url, io)) log.line("LAN peer " + LanPeer.peerOf(url) + " unreachable, skipped for the rest of this run");
+                        else log.line("Not on LAN peer (" + io.getMessage() + "): " + base);
+                        continue;
+                    }
+                    log.line("Download hiccup (" + io.getMessage() + ")" + (ranked.size() > 1 ? " from " + url : ""));
+                    log.event(new InstallEvent.Retry(url, attempt, String.valueOf(io.getMessage())));
+                } finally {
+                    if (tmp != null) try { Files.deleteIfExists(tmp); } catch (Exception ignore) {}
                 }
-                return finalPath;
-            } catch (IOException io) {
-                last = io;
-                log.line("Download hiccup (" + io.getMessage() + "), retrying in " + (attempt * 800L) + "ms…");
+            }
+            if (attempt < 3) {
+                log.line("Retrying " + base + " in " + (attempt * 800L) + "ms…");
                 Thread.sleep(attempt * 800L);
-            } finally {
-                if (tmp != null) try { Files.deleteIfExists(tmp); } catch (Exception ignore) {}
             }
         }
         throw last != null ? last : new IOException("Unknown download error for " + base);
     }
 
-    private static void verifySha512(Path file, String expected) throws Exception {
+    /** Stream a body into a temp file next to {@code finalPath} (deleted again on failure). */
+    static Path writeTemp(InputStream body, Path finalPath) throws IOException {
+        Path tmp;
+        try {
+            tmp = Files.createTempFile(finalPath.getParent(), "dl-", ".tmp");
+        } catch (IOException ioInMods) {
+            tmp = Files.createTempFile(Paths.get(System.getProperty("java.io.tmpdir")), "dl-", ".tmp");
+        }
+        try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING)) {
+            body.transferTo(out);
+            return tmp;
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /** Hash-pinned downloads go through the artifact store (then linked into place); others are just moved. */
+    private static void placeVerified(Path tmp, Path finalPath, String sha512) throws IOException {
+        if (sha512 != null && !sha512.isBlank()) {
+            try {
+                ArtifactStore store = ArtifactStore.shared();
+                store.ingest(tmp, sha512);
+                store.place(sha512, finalPath);
+                return;
+            } catch (IOException storeFailed) {
+                if (!Files.exists(tmp)) throw storeFailed; // already moved into the store; placement itself failed
+            }
+        }
+        moveIntoPlace(tmp, finalPath);
+    }
+
+    static void moveIntoPlace(Path tmp, Path finalPath) throws IOException {
+        try {
+            Files.move(tmp, finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, finalPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static void verifySha512(Path file, String expected) throws Exception {
+        Flight.Verify jfr = new Flight.Verify();
+        jfr.begin();
         MessageDigest md = MessageDigest.getInstance("SHA-512");
         byte[] got = md.digest(Files.readAllBytes(file));
         StringBuilder sb = new StringBuilder();
         for (byte b : got) sb.append(String.format("%02x", b));
-        if (!sb.toString().equalsIgnoreCase(expected))
+        boolean ok = sb.toString().equalsIgnoreCase(expected);
+        Flight.commit(jfr, file, ok);
+        if (!ok)
             throw new IOException("SHA-512 mismatch for " + file.getFileName());
     }
 
+    /** {@link #verifySha512} for bytes just fetched from {@code url}: wrong bytes count against its host. */
+    private static void verifyFrom(String url, Path file, String expected) throws Exception {
+        try {
+            verifySha512(file, expected);
+        } catch (IOException wrongBytes) {
+            HostStats.shared().failure(url); // the request itself succeeded (timedGet recorded that)
+            throw wrongBytes;
+        }
+    }
+
     private static boolean arrayContainsIgnoreCase(JsonNode arr, String needle) {
         for (JsonNode n : arr) if (needle.equalsIgnoreCase(n.asText())) return true;
         return false;
     }
 
-    private record FileInfo(String url, String filename, String sha512) {}
-    private static FileInfo chooseNeoForgeFile(JsonNode files) {
+    /** Newest entry of a Modrinth version list (by date_published) that supports {@code requiredLoader}. */
+    static JsonNode newestWithLoader(JsonNode versions, String requiredLoader) {
+        JsonNode newest = null;
+        Instant newestAt = null;
+        for (JsonNode v : versions) {
+            if (!arrayContainsIgnoreCase(v.path("loaders"), requiredLoader)) continue;
+            Instant at = Instant.parse(v.get("date_published").asText());
+            if (newest == null || at.isAfter(newestAt)) {
+                newest = v;
+                newestAt = at;
+            }
+        }
+        return newest;
+    }
+
+    record FileInfo(String url, String filename, String sha512) {}
+    static FileInfo chooseNeoForgeFile(JsonNode files) {
         // Prefer filenames clearly marked neoforge, avoid fabric; else primary; else first.
         JsonNode primary = null, first = null, named = null;
         for (JsonNode f : files) {
@@ -285,15 +866,23 @@ public class ModFetcher extends Main {
         if (pick == null) return null;
         String url = pick.get("url").asText();
         String filename = pick.get("filename").asText();
-        String sha = pick.with("hashes").path("sha512").asText(null);
+        String sha = pick.path("hashes").path("sha512").asText(null);
         return new FileInfo(url, filename, sha);
     }
 
-    private static void deleteMatching(Path dir, Pattern p, Installer.Log log) {
+    /** Delete files in {@code dir} whose name matches {@code p}, except {@code keep}. */
+    private static void deleteMatching(Path dir, Pattern p, Path keep, Installer.Log log) {
         try (var s = Files.list(dir)) {
             s.filter(Files::isRegularFile)
+                    .filter(f -> !f.getFileName().equals(keep.getFileName()))
                     .filter(f -> p.matcher(f.getFileName().toString()).find())
-                    .forEach(f -> { try { Files.deleteIfExists(f); log.line("Deleted old: " + f.getFileName()); } catch (IOException ignored) {} });
+                    .forEach(f -> {
+                        try {
+                            Files.deleteIfExists(f);
+                            ModIndex.of(dir).remove(f);
+                            log.line("Deleted old: " + f.getFileName());
+                        } catch (IOException ignored) {}
+                    });
         } catch (IOException ignored) {}
     }
 
@@ -0,0 +1,198 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent (name, size, mtime, SHA-1, SHA-512) index of one mods folder, stored at
+ * {@code <gameDir>/.hfd/mods-index.json}. Files are re-hashed only when size or mtime changed;
+ * lookups by hash are O(1). One shared instance per folder ({@link #of}) for the whole process,
+ * thread-safe.
+ */
+final class ModIndex {
+
+    record Entry(String name, long size, long mtime, String sha1, String sha512) {}
+
+    /** Held strongly: callers update an index and save it later, so it must outlive them. */
+    private static final Map<Path, ModIndex> OPEN = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final Path file;
+    private final Map<String, Entry> byName = new HashMap<>();
+    private final Map<String, Entry> bySha1 = new HashMap<>();
+    private final Map<String, Entry> bySha512 = new HashMap<>();
+    private boolean dirty = false;
+
+    /** A separate, unshared view of the folder as stored on disk; use {@link #of} instead. */
+    ModIndex(Path dir) {
+        this.dir = dir;
+        Path gameDir = dir.getParent() != null ? dir.getParent() : dir;
+        this.file = gameDir.resolve(".hfd").resolve("mods-index.json");
+        load();
+    }
+
+    /** Shared index for {@code modsDir} (loaded from disk on first use). */
+    static ModIndex of(Path modsDir) {
+        return OPEN.computeIfAbsent(modsDir.toAbsolutePath().normalize(), ModIndex::new);
+    }
+
+    // ----------- Updates ------------
+
+    /** Index a file that was just placed (hashes only if size/mtime differ from what we know). */
+    synchronized Entry record(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        BasicFileAttributes a = Files.readAttributes(path, BasicFileAttributes.class);
+        Entry old = byName.get(name);
+        if (old != null && old.size() == a.size() && old.mtime() == a.lastModifiedTime().toMillis()) return old;
+
+        String[] h = hash(path);
+        Entry e = new Entry(name, a.size(), a.lastModifiedTime().toMillis(), h[0], h[1]);
+        put(e);
+        return e;
+    }
+
+    synchronized void remove(Path path) {
+        Entry old = byName.remove(path.getFileName().toString());
+        if (old != null) { unlinkHashes(old); dirty = true; }
+    }
+
+    /** Sync with the folder: drop vanished files, hash new or changed ones. */
+    synchronized void refresh() throws IOException {
+        Map<String, Path> present = new HashMap<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.jar")) {
+                for (Path p : ds) if (Files.isRegularFile(p)) present.put(p.getFileName().toString(), p);
+            }
+        }
+        for (String name : byName.keySet().toArray(new String[0])) {
+            if (!present.containsKey(name)) remove(dir.resolve(name));
+        }
+        for (Path p : present.values()) record(p);
+    }
+
+    // ----------- Lookups ------------
+
+    /** Current entry for {@code path}, re-hashed if it changed on disk; null if missing. */
+    synchronized Entry lookup(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) { remove(path); return null; }
+        return record(path);
+    }
+
+    synchronized Entry findBySha512(String sha512) {
+        return sha512 == null ? null : fresh(bySha512.get(sha512.toLowerCase(Locale.ROOT)));
+    }
+
+    synchronized Entry findBySha1(String sha1) {
+        return sha1 == null ? null : fresh(bySha1.get(sha1.toLowerCase(Locale.ROOT)));
+    }
+
+    /** True if {@code path} is on disk, unchanged since indexed, and has this SHA-512. */
+    synchronized boolean isCurrent(Path path, String sha512) {
+        if (sha512 == null || sha512.isBlank()) return false;
+        Entry e = byName.get(path.getFileName().toString());
+        return e != null && e.sha512().equalsIgnoreCase(sha512) && fresh(e) != null;
+    }
+
+    Path path(Entry e) { return dir.resolve(e.name()); }
+
+    // ----------- Persistence ------------
+
+    /** Write the index if anything changed (temp file + atomic move). */
+    synchronized void save() throws IOException {
+        if (!dirty) return;
+        ObjectNode root = Main.JSON.createObjectNode();
+        root.put("version", 1);
+        ArrayNode arr = root.putArray("entries");
+        for (Entry e : byName.values()) {
+            ObjectNode n = arr.addObject();
+            n.put("name", e.name());
+            n.put("size", e.size());
+            n.put("mtime", e.mtime());
+            n.put("sha1", e.sha1());
+            n.put("sha512", e.sha512());
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), "mods-index-", ".tmp");
+        try {
+            Main.JSON.writeValue(tmp.toFile(), root);
+            ModFetcher.moveIntoPlace(tmp, file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        dirty = false;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) return;
+        try {
+            JsonNode root = Main.JSON.readTree(file.toFile());
+            for (JsonNode n : root.path("entries")) {
+                put(new Entry(n.path("name").asText(), n.path("size").asLong(), n.path("mtime").asLong(),
+                        n.path("sha1").asText(), n.path("sha512").asText()));
+            }
+            dirty = false;
+        } catch (IOException | RuntimeException e) {
+            byName.clear(); bySha1.clear(); bySha512.clear(); // corrupt index: rebuild lazily
+        }
+    }
+
+    // ----------- Internals ------------
+
+    private void put(Entry e) {
+        Entry old = byName.put(e.name(), e);
+        if (old != null) unlinkHashes(old);
+        bySha1.put(e.sha1(), e);
+        bySha512.put(e.sha512(), e);
+        dirty = true;
+    }
+
+    private void unlinkHashes(Entry e) {
+        bySha1.remove(e.sha1(), e);
+        bySha512.remove(e.sha512(), e);
+    }
+
+    /** {@code e} if its file still has the indexed size/mtime (one stat), else null. */
+    private Entry fresh(Entry e) {
+        if (e == null) return null;
+        try {
+            BasicFileAttributes a = Files.readAttributes(dir.resolve(e.name()), BasicFileAttributes.class);
+            return a.size() == e.size() && a.lastModifiedTime().toMillis() == e.mtime() ? e : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /** SHA-1 and SHA-512 (lower-case hex) in one pass. */
+    static String[] hash(Path path) throws IOException {
+        MessageDigest sha1, sha512;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+            sha512 = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                sha1.update(buf, 0, n);
+                sha512.update(buf, 0, n);
+            }
+        }
+        HexFormat hex = HexFormat.of();
+        return new String[]{ hex.formatHex(sha1.digest()), hex.formatHex(sha512.digest()) };
+    }
+}
@@ -0,0 +1,208 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The embedded NeoForge installer, run headless ({@code --installClient <mc dir>}) as a child
+ * process. Its output is pumped on a reader thread and handled on the install thread: every line
+ * goes to the log, library and processor lines become {@link InstallEvent.StepProgress} against
+ * the totals in the installer's {@code install_profile.json}, and a child that prints nothing for
+ * {@code -Dhfd.neoforge.stallSeconds} (default 180, 0 = never) is killed and reported.
+ * <p>
+ * Child JVM: {@code -Dhfd.neoforge.jvmArgs="…"} replaces {@link #DEFAULT_JVM_ARGS}; unless
+ * {@code -Dhfd.neoforge.cds=false}, the first run of a given installer on a given JDK dumps a
+ * class-data archive next to the artifact store and later runs (repairs, other instances) map it.
+ */
+final class NeoForgeChild {
+
+    /** Fixed starting heap (no resize churn while processors patch the game jar), throughput GC. */
+    static final String DEFAULT_JVM_ARGS = "-Xms256m -XX:+UseParallelGC -XX:-UsePerfData";
+
+    private static final long STALL_SECONDS = Long.getLong("hfd.neoforge.stallSeconds", 180);
+    private static final Pattern LIBRARY = Pattern.compile("^\\s*Considering library \\S+");
+    private static final Pattern PROCESSOR = Pattern.compile("^\\s*MainClass:\\s*\\S+");
+
+    /** One line of child output; {@link #EOF} (no text) once the output has closed. */
+    private record Line(String text) {
+        static final Line EOF = new Line(null);
+        boolean isEof() { return text == null; }
+    }
+
+    private NeoForgeChild() {}
+
+    /** Install into {@code mcDir}; throws if the installer fails, stalls, or the run is cancelled. */
+    static void run(String javaBin, Path installer, Path mcDir, Installer.Log log) throws Exception {
+        int total = expectedSteps(installer);
+        Path cds = cdsArchive(installer);
+        // dynamic AppCDS: map the archive if a previous run left one, else dump one under a name of
+        // our own (a concurrent first run dumps too) and move it into place once the install worked
+        Path mapCds = cds != null && Files.isRegularFile(cds) ? cds : null;
+        Path dumpCds = cds != null && mapCds == null
+                ? cds.resolveSibling(cds.getFileName() + "." + ProcessHandle.current().pid() + "-" + System.nanoTime() + ".tmp")
+                : null;
+        List<String> cmd = command(javaBin, installer, mcDir, mapCds, dumpCds);
+        log.line("Launching installer: " + installer + " (headless)");
+
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        Runnable kill = () -> { // take the installer and anything it started down with us
+            p.descendants().forEach(ProcessHandle::destroyForcibly);
+            p.destroyForcibly();
+        };
+        BlockingQueue<Line> lines = new LinkedBlockingQueue<>();
+        Thread pump = new Thread(() -> {
+            try (BufferedReader r = p.inputReader(Charset.defaultCharset())) {
+                for (String s; (s = r.readLine()) != null; ) lines.add(new Line(s));
+            } catch (IOException ignored) {
+                // stream closed: the child is gone
+            } finally {
+                lines.add(Line.EOF);
+            }
+        }, "hfd-neoforge-output");
+        pump.setDaemon(true);
+        pump.start();
+
+        boolean finished = false;
+        Cancellation.Hook killOnCancel = Cancellation.current().onCancel(kill);
+        try {
+            long stallNanos = TimeUnit.SECONDS.toNanos(STALL_SECONDS);
+            long lastOutput = System.nanoTime();
+            int done = 0;
+            String last = "";
+            while (true) {
+                Line next = lines.poll(1, TimeUnit.SECONDS);
+                if (next != null && next.isEof()) break;
+                if (next == null) {
+                    if (stallNanos > 0 && System.nanoTime() - lastOutput > stallNanos) {
+                        kill.run();
+                        throw new IOException("NeoForge installer stalled (no output for " + STALL_SECONDS
+                                + " s after: " + last + "); stopped it");
+                    }
+                    continue;
+                }
+                lastOutput = System.nanoTime();
+                String line = next.text();
+                if (line.isBlank()) continue;
+                last = line.strip();
+                log.line("[NeoForge] " + last);
+                if (LIBRARY.matcher(line).find() || PROCESSOR.matcher(line).find()) {
+                    log.event(new InstallEvent.StepProgress("neoforge", ++done, Math.max(total, done)));
+                }
+            }
+            // output closed: the child is exiting (or was killed by an abort)
+            if (!p.waitFor(Math.max(STALL_SECONDS, 30), TimeUnit.SECONDS)) {
+                kill.run();
+                throw new IOException("NeoForge installer closed its output but did not exit; stopped it");
+            }
+            Cancellation.current().check(); // our kill, not the installer's failure
+            log.line("Installer exited with code " + p.exitValue());
+            if (p.exitValue() != 0) throw new IOException("NeoForge installer failed (exit " + p.exitValue() + "): " + last);
+            finished = true;
+        } catch (InterruptedException e) {
+            kill.run();
+            throw e;
+        } finally {
+            killOnCancel.close();
+            if (dumpCds != null) publishCds(dumpCds, cds, finished);
+        }
+    }
+
+    // ----------- Command line ------------
+
+    /** The child's command line; {@code mapCds} / {@code dumpCds}: class-data archive to map / to write at exit. */
+    static List<String> command(String javaBin, Path installer, Path mcDir, Path mapCds, Path dumpCds) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(javaBin);
+        String flags = System.getProperty("hfd.neoforge.jvmArgs", DEFAULT_JVM_ARGS);
+        for (String f : flags.trim().split("\\s+")) if (!f.isEmpty()) cmd.add(f);
+        if (mapCds != null) cmd.add("-XX:SharedArchiveFile=" + mapCds);
+        else if (dumpCds != null) cmd.add("-XX:ArchiveClassesAtExit=" + dumpCds);
+        cmd.add("-Djava.awt.headless=true");
+        cmd.add("-jar");
+        cmd.add(installer.toAbsolutePath().toString());
+        cmd.add("--installClient");
+        cmd.add(mcDir.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /** Archive for this installer on this JDK, or null when off or the installer is a one-off temp copy. */
+    private static Path cdsArchive(Path installer) {
+        if ("false".equals(System.getProperty("hfd.neoforge.cds"))) return null;
+        Path root = ArtifactStore.defaultRoot();
+        if (!installer.toAbsolutePath().startsWith(root.toAbsolutePath())) return null;
+        try {
+            Path dir = Files.createDirectories(root.resolve("cds"));
+            String name = installer.getFileName().toString();
+            String jdk = Runtime.version().toString().replaceAll("[^0-9A-Za-z.]+", "_");
+            return dir.resolve(name.substring(0, Math.min(32, name.length())) + "-" + jdk + ".jsa");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Move a completed dump into place (first one wins); a failed or killed run's may be half written: drop it. */
+    private static void publishCds(Path dump, Path cds, boolean completed) {
+        try {
+            if (completed && Files.isRegularFile(dump) && !Files.exists(cds)) {
+                try {
+                    Files.move(dump, cds, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(dump, cds);
+                }
+            }
+        } catch (IOException ignored) {
+            // another run got there first, or the folder is read-only: next run dumps again
+        } finally {
+            try { Files.deleteIfExists(dump); } catch (IOException ignored) {}
+        }
+    }
+
+    // ----------- Expected work ------------
+
+    /**
+     * Libraries to consider plus client-side processors, from {@code install_profile.json} and the
+     * version json it names; 0 if the installer doesn't look like that (progress then follows time).
+     */
+    static int expectedSteps(Path installer) {
+        try (ZipFile zip = new ZipFile(installer.toFile())) {
+            JsonNode profile = readEntry(zip, "install_profile.json");
+            if (profile == null) return 0;
+            int n = profile.path("libraries").size();
+            JsonNode version = readEntry(zip, profile.path("json").asText("/version.json").replaceFirst("^/", ""));
+            if (version != null) n += version.path("libraries").size();
+            for (JsonNode proc : profile.path("processors")) {
+                JsonNode sides = proc.path("sides");
+                boolean client = sides.isMissingNode();
+                for (JsonNode s : sides) client |= "client".equals(s.asText());
+                if (client) n++;
+            }
+            return n;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static JsonNode readEntry(ZipFile zip, String name) throws IOException {
+        ZipEntry e = zip.getEntry(name);
+        if (e == null) return null;
+        try (InputStream in = zip.getInputStream(e)) {
+            return Main.JSON.readTree(in);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Verify (and optionally repair) an installed pack without a full reinstall.
+ * Hashes the installed mods in parallel (memory-mapped reads), compares them with the embedded
+ * pack and the resolved external mods, checks the child version JSON and our launcher profile,
+ * then re-extracts / re-fetches / rewrites only what differs. Logs how long each step took.
+ */
+public class PackVerifier extends Main {
+
+    /** One thing that is missing or different; {@code fixed} after a successful repair. */
+    public record Issue(String what, Path path, String detail, boolean fixed) {}
+
+    public record Report(List<Issue> issues, int checked) {
+        public boolean ok() { return issues.stream().allMatch(Issue::fixed); }
+    }
+
+    private static final long MAP_CHUNK = 64L * 1024 * 1024;
+
+    // mapped buffers pin files on Windows until GC, which would block repairing them
+    private static final boolean USE_MMAP = !System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+
+    /** What a mods/ file should be and where to get it again. */
+    private record Expected(String name, String sha512, EmbeddedPayload.Mod embedded, ModFetcher.Resolved external) {}
+
+    public Report run(Path mc, boolean repair, Installer.Log log) throws Exception {
+        TimingReport timings = new TimingReport();
+        Installer.Log events = new InstallEvents(log).listen(timings);
+        Path gameDir = mc.resolve(GAME_DIR_NAME);
+        Path modsDir = gameDir.resolve("mods");
+        List<Issue> issues = new ArrayList<>();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "verify-hash");
+            t.setDaemon(true);
+            return t;
+        });
+        log.line((repair ? "Verifying and repairing " : "Verifying ") + gameDir + " …");
+
+        ModFetcher fetcher = new ModFetcher();
+        try (EmbeddedPayload payload = EmbeddedPayload.open(selfJarPath())) {
+            Map<String, Expected> expected = new LinkedHashMap<>();
+
+            // 1) Expected hashes of the embedded pack (manifest, else entries hashed in parallel)
+            try (var ph = InstallEvent.phase(events, "verify:embedded-hashes")) {
+                Map<EmbeddedPayload.Mod, Future<String>> futures = new LinkedHashMap<>();
+                for (EmbeddedPayload.Mod m : payload.mods()) {
+                    // the build's manifest already knows the hash; only hash entries it doesn't list
+                    futures.put(m, m.sha512() != null ? CompletableFuture.completedFuture(m.sha512()) : pool.submit(() -> sha512(m.source())));
+                }
+                for (var e : futures.entrySet()) {
+                    EmbeddedPayload.Mod m = e.getKey();
+                    expected.put(m.name(), new Expected(m.name(), get(e.getValue()), m, null));
+                }
+                ph.ok();
+            }
+
+            // 2) Expected external mods (metadata only, no downloads)
+            try (var ph = InstallEvent.phase(events, "verify:resolve-external")) {
+                for (ModFetcher.Resolved r : fetcher.resolveAll(TARGET_MC_VERSION, events)) {
+                    String name = r.file().filename();
+                    expected.put(name, new Expected(name, r.file().sha512(), null, r));
+                }
+                ph.ok();
+            }
+
+            // 3) Hash what is installed (parallel, memory-mapped)
+            Map<String, String> actual = new HashMap<>();
+            try (var ph = InstallEvent.phase(events, "verify:hash-installed")) {
+                Map<String, Future<String>> futures = new LinkedHashMap<>();
+                for (Expected x : expected.values()) {
+                    Path p = modsDir.resolve(x.name());
+                    if (Files.isRegularFile(p)) futures.put(x.name(), pool.submit(() -> sha512Mapped(p)));
+                }
+                for (var e : futures.entrySet()) actual.put(e.getKey(), get(e.getValue()));
+                ph.ok();
+            }
+
+            // 4) Compare, then repair only what differs
+            try (var ph = InstallEvent.phase(events, repair ? "verify:repair-mods" : "verify:compare-mods")) {
+                ModIndex index = ModIndex.of(modsDir);
+                for (Expected x : expected.values()) {
+                    Path p = modsDir.resolve(x.name());
+                    String have = actual.get(x.name());
+                    String problem = have == null ? "missing"
+                            : (x.sha512() != null && !x.sha512().isBlank() && !x.sha512().equalsIgnoreCase(have)) ? "hash mismatch"
+                            : null;
+                    if (problem == null) continue;
+
+                    boolean fixed = false;
+                    if (repair) {
+                        try {
+                            Files.createDirectories(modsDir);
+                            if (x.embedded() != null) {
+                                ArtifactStore.placeFrom(x.embedded().source(), p);
+                                log.line("Re-extracted " + x.name());
+                            } else {
+                                fetcher.fetchResolved(x.external(), modsDir, events);
+                                log.line("Re-fetched " + x.name());
+                            }
+                            index.record(p);
+                            fixed = x.sha512() == null || x.sha512().isBlank() || x.sha512().equalsIgnoreCase(sha512Mapped(p));
+                        } catch (Exception ex) {
+                            log.line("Could not repair " + x.name() + ": " + ex.getMessage());
+                        }
+                    }
+                    issues.add(new Issue("mod", p, problem, fixed));
+                }
+                index.save();
+                ph.ok();
+            }
+
+            // 5) Child version JSON + launcher profile
+            try (var ph = InstallEvent.phase(events, "verify:version-and-profile")) {
+                checkVersionAndProfile(mc, gameDir, repair, issues, events);
+                ph.ok();
+            }
+
+            int checked = expected.size() + 2;
+            logSummary(issues, checked, repair, timings, log);
+            return new Report(issues, checked);
+        } finally {
+            pool.shutdownNow();
+            ModFetcher.endRun(log);
+        }
+    }
+
+    private void checkVersionAndProfile(Path mc, Path gameDir, boolean repair, List<Issue> issues, Installer.Log log)
+            throws Exception {
+        String neo = findNeoForgeId(mc);
+        if (neo == null) {
+            issues.add(new Issue("neoforge", mc.resolve("versions"), "NeoForge " + REQUIRED_NEOFORGE_ID
+                    + " " + neoForgeProblem(mc, REQUIRED_NEOFORGE_ID) + " (run the full installer)", false));
+            return;
+        }
+
+        Path childJson = childVersionJson(mc);
+        String problem = null;
+        if (!Files.isRegularFile(childJson)) {
+            problem = "missing";
+        } else {
+            try {
+                JsonNode have = JSON.readTree(childJson.toFile());
+                if (!childVersionNode(neo).equals(have)) problem = "unexpected content";
+            } catch (IOException e) {
+                problem = "unreadable (" + e.getMessage() + ")";
+            }
+        }
+        if (problem != null) {
+            boolean fixed = false;
+            if (repair) { writeChildVersion(mc, neo, log); fixed = true; }
+            issues.add(new Issue("version", childJson, problem, fixed));
+        }
+
+        Path profilesPath = mc.resolve("launcher_profiles_microsoft_store.json");
+        if (!Files.exists(profilesPath)) profilesPath = mc.resolve("launcher_profiles.json");
+        problem = null;
+        try {
+            JsonNode mine = Files.exists(profilesPath) ? readJsonObject(profilesPath).path("profiles").path(CHILD_VERSION_ID) : null;
+            if (mine == null || mine.isMissingNode()) problem = "HFD profile missing";
+            else if (!CHILD_VERSION_ID.equals(mine.path("lastVersionId").asText())) problem = "profile points at " + mine.path("lastVersionId").asText();
+            else if (!gameDir.toAbsolutePath().toString().equals(mine.path("gameDir").asText())) problem = "profile gameDir is " + mine.path("gameDir").asText();
+        } catch (IOException | ClassCastException e) {
+            problem = "unreadable (" + e.getMessage() + ")";
+        }
+        if (problem != null) {
+            boolean fixed = false;
+            if (repair) { upsertHfdProfile(detectLauncherProfilesFile(mc), gameDir, log); fixed = true; }
+            issues.add(new Issue("profile", profilesPath, problem, fixed));
+        }
+    }
+
+    private static void logSummary(List<Issue> issues, int checked, boolean repair, TimingReport timings, Installer.Log log) {
+        for (Issue i : issues) {
+            log.line((i.fixed() ? "  fixed: " : "  " + (repair ? "FAILED: " : "problem: ")) + i.what() + " " + i.path().getFileName() + " — " + i.detail());
+        }
+        JsonNode phases = timings.toJson(true).path("phases");
+        StringBuilder sb = new StringBuilder("Step timings:");
+        phases.fields().forEachRemaining(e -> sb.append(' ').append(e.getKey().replace("verify:", ""))
+                .append('=').append(e.getValue().path("ms").asLong()).append("ms"));
+        log.line(sb.toString());
+        long open = issues.stream().filter(i -> !i.fixed()).count();
+        log.line(open == 0
+                ? (issues.isEmpty() ? "All " + checked + " checks passed." : "Repaired " + issues.size() + " problem(s).")
+                : open + " problem(s) " + (repair ? "could not be repaired." : "found — run repair to fix them."));
+    }
+
+    // ----------- Hashing -----------
+
+    /** SHA-512 of a file via memory-mapped chunks (buffered channel reads on Windows). */
+    static String sha512Mapped(Path p) throws IOException {
+        MessageDigest md = sha512();
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (USE_MMAP) {
+                for (long pos = 0; pos < size; pos += MAP_CHUNK) {
+                    MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_CHUNK, size - pos));
+                    md.update(mb);
+                }
+            } else {
+                ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+                while (ch.read(buf) > 0) {
+                    buf.flip();
+                    md.update(buf);
+                    buf.clear();
+                }
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static String sha512(ArtifactStore.Source src) throws IOException {
+        MessageDigest md = sha512();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = src.open()) {
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest sha512() {
+        try { return MessageDigest.getInstance("SHA-512"); }
+        catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+    }
+
+    private static String get(Future<String> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+}
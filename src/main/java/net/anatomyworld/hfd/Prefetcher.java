@@ -0,0 +1,98 @@
+package net.anatomyworld.hfd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+
+/**
+ * Speculative work done while the user is still looking at the install screen: puts the NeoForge
+ * installer and the embedded mods into the {@link ArtifactStore}, resolves the external mods and
+ * downloads them into the store too. Only ever writes to the store, never to {@code .minecraft};
+ * the real install then links everything from there. One low-priority daemon thread,
+ * {@link #cancel() cancellable} at any point (Install clicked, window closed).
+ * Disable with {@code -Dhfd.prefetch=false}.
+ */
+final class Prefetcher extends Main {
+
+    private final Installer.Log log;
+    private volatile boolean cancelled;
+    private Thread thread;
+
+    Prefetcher(Installer.Log log) { this.log = log; }
+
+    static boolean enabled() { return !"false".equals(System.getProperty("hfd.prefetch")); }
+
+    void start() {
+        if (!enabled() || thread != null) return;
+        thread = new Thread(this::run, "hfd-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /** Stop as soon as possible; whatever already reached the store is kept and reused. */
+    void cancel() {
+        cancelled = true;
+        Thread t = thread;
+        if (t != null) t.interrupt();
+    }
+
+    /**
+     * {@link #cancel()} and wait (briefly) for the thread to finish, so nothing it still does
+     * overlaps the install or repair that takes over. Not on the EDT.
+     */
+    void cancelAndWait() throws InterruptedException {
+        cancel();
+        Thread t = thread;
+        if (t != null) t.join(2_000);
+    }
+
+    private void run() {
+        Installer.Log quiet = s -> {}; // the user hasn't asked for anything yet: keep the log for the install
+        long t0 = System.nanoTime();
+        int fetched = 0;
+        try {
+            // 1) NeoForge installer → store
+            if (cancelled) return;
+            locateBundledInstaller(quiet);
+
+            // 2) Embedded mods → store (solid payload: unpacked on first access)
+            ArtifactStore store = ArtifactStore.shared();
+            try (EmbeddedPayload payload = EmbeddedPayload.open(selfJarPath())) {
+                if (!payload.isDev()) {
+                    for (EmbeddedPayload.Mod m : payload.mods()) {
+                        if (cancelled) return;
+                        if (m.source().stored() != null) continue;
+                        try (InputStream in = m.source().open()) { store.ingest(in); }
+                    }
+                }
+            }
+
+            // 3) External mods: resolve, then download into the store
+            ModFetcher fetcher = new ModFetcher();
+            for (ModFetcher.Resolved r : fetcher.resolveAll(TARGET_MC_VERSION, quiet)) {
+                if (cancelled) return;
+                try {
+                    fetcher.prefetch(r, quiet);
+                    fetched++;
+                } catch (InterruptedException | InterruptedIOException | ClosedByInterruptException e) {
+                    return;
+                } catch (Exception e) {
+                    // the install will try this one again itself
+                }
+            }
+            HostStats.shared().save();
+            log.line("(Prepared " + fetched + " download(s) in the background in "
+                    + (System.nanoTime() - t0) / 1_000_000 + " ms)");
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            // cancelled
+        } catch (IOException | RuntimeException e) {
+            if (!cancelled) log.line("(Background preparation stopped: " + e.getMessage() + ")");
+        } finally {
+            // cancelled = an install or repair has taken over the shared answers and ends the run itself;
+            // the resolutions stay handed over to the install either way (see ModFetcher.prefetch)
+            if (!cancelled) ModFetcher.endRun(quiet);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package net.anatomyworld.hfd;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Render cache for static UI layers and sprites.
+ * {@link Layer} keeps a size-keyed back buffer (VolatileImage when the screen offers one,
+ * BufferedImage otherwise) that is re-rendered only after a resize, a lost surface or
+ * {@link Layer#invalidate()}; {@link #scaled} hands out pre-scaled copies of images.
+ */
+final class RenderCache {
+
+    // -Dhfd.noVolatile=true forces the BufferedImage path (driver trouble, remote desktops)
+    private static final boolean VOLATILE_DISABLED = Boolean.getBoolean("hfd.noVolatile");
+
+    private RenderCache() {}
+
+    /** Paints one static layer at the given size into a fresh buffer. */
+    interface Painter { void paint(Graphics2D g, int w, int h); }
+
+    // ----------- Static layers ------------
+
+    static final class Layer {
+        private final Painter painter;
+        private final int transparency;
+        private VolatileImage vi;
+        private BufferedImage bi;
+        private int w = -1, h = -1;
+        private boolean dirty = true;
+
+        Layer(Painter painter, boolean translucent) {
+            this.painter = painter;
+            this.transparency = translucent ? Transparency.TRANSLUCENT : Transparency.OPAQUE;
+        }
+
+        /** Force a re-render on the next draw (e.g. colors changed). */
+        void invalidate() { dirty = true; }
+
+        /** Draw the cached layer at 0,0 of {@code c}, rendering it first if needed. */
+        void draw(Graphics g, Component c) {
+            int cw = c.getWidth(), ch = c.getHeight();
+            if (cw <= 0 || ch <= 0) return;
+            if (cw != w || ch != h) { release(); w = cw; h = ch; }
+
+            GraphicsConfiguration gc = c.getGraphicsConfiguration();
+            if (gc != null && !VOLATILE_DISABLED && drawVolatile(g, gc)) return;
+            drawBuffered(g);
+        }
+
+        private boolean drawVolatile(Graphics g, GraphicsConfiguration gc) {
+            try {
+                do {
+                    if (vi == null) { vi = gc.createCompatibleVolatileImage(w, h, transparency); dirty = true; }
+                    int v = vi.validate(gc);
+                    if (v == VolatileImage.IMAGE_INCOMPATIBLE) { vi.flush(); vi = null; continue; }
+                    if (v == VolatileImage.IMAGE_RESTORED || dirty) render(vi.createGraphics());
+                    g.drawImage(vi, 0, 0, null);
+                } while (vi == null || vi.contentsLost());
+                return true;
+            } catch (RuntimeException e) { // odd pipelines: use the BufferedImage path instead
+                if (vi != null) vi.flush();
+                vi = null;
+                dirty = true;
+                return false;
+            }
+        }
+
+        private void drawBuffered(Graphics g) {
+            if (bi == null) {
+                bi = new BufferedImage(w, h, transparency == Transparency.OPAQUE
+                        ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+                dirty = true;
+            }
+            if (dirty) render(bi.createGraphics());
+            g.drawImage(bi, 0, 0, null);
+        }
+
+        private void render(Graphics2D g) {
+            try {
+                if (transparency != Transparency.OPAQUE) {
+                    g.setComposite(AlphaComposite.Clear);
+                    g.fillRect(0, 0, w, h);
+                    g.setComposite(AlphaComposite.SrcOver);
+                }
+                painter.paint(g, w, h);
+            } finally {
+                g.dispose();
+            }
+            dirty = false;
+        }
+
+        private void release() {
+            if (vi != null) { vi.flush(); vi = null; }
+            if (bi != null) { bi.flush(); bi = null; }
+            dirty = true;
+        }
+    }
+
+    // ----------- Pre-scaled sprites ------------
+
+    private record SpriteKey(Image src, int w, int h) {}
+
+    private static final int MAX_SPRITES = 64;
+    private static final Map<SpriteKey, BufferedImage> SPRITES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<SpriteKey, BufferedImage> e) { return size() > MAX_SPRITES; }
+    };
+
+    /** {@code src} scaled to w×h with bicubic filtering, computed once per size. */
+    static BufferedImage scaled(Image src, int w, int h) {
+        SpriteKey key = new SpriteKey(src, Math.max(1, w), Math.max(1, h));
+        synchronized (SPRITES) {
+            BufferedImage hit = SPRITES.get(key);
+            if (hit != null) return hit;
+        }
+        BufferedImage out = new BufferedImage(key.w(), key.h(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, key.w(), key.h(), null);
+        g.dispose();
+        synchronized (SPRITES) {
+            SPRITES.put(key, out);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,72 @@
+package net.anatomyworld.hfd;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Request coalescing for one run: the first caller for a key does the work on its own thread
+ * (so its {@link Cancellation} and log apply), concurrent callers for the same key wait for that
+ * result instead of repeating it, and a success is remembered until {@link #clear()}. Failures
+ * aren't remembered; if the leader was cancelled, a waiter that wasn't tries itself.
+ */
+final class SingleFlight<K, V> {
+
+    interface Loader<V> { V load() throws Exception; }
+
+    private final Map<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger shared = new AtomicInteger();
+
+    /** The value for {@code key}: remembered, in flight elsewhere, or loaded now. */
+    V get(K key, Loader<V> loader) throws Exception {
+        return get(key, loader, v -> true);
+    }
+
+    /** As above; a remembered value failing {@code stillValid} (e.g. a file since deleted) is loaded again. */
+    V get(K key, Loader<V> loader, Predicate<V> stillValid) throws Exception {
+        while (true) {
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            CompletableFuture<V> call = calls.putIfAbsent(key, mine);
+            if (call == null) return lead(key, mine, loader);
+
+            V v;
+            try {
+                v = call.get();
+            } catch (ExecutionException | CancellationException e) { // get() rethrows a CancellationException as is
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                if (!Cancellation.current().isCancelled() && Cancellation.isCancel(cause)) continue; // the leader's abort, not ours
+                throw cause instanceof Exception x ? x : e;
+            }
+            if (stillValid.test(v)) {
+                shared.incrementAndGet();
+                return v;
+            }
+            calls.remove(key, call);
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> call, Loader<V> loader) throws Exception {
+        try {
+            V v = loader.load();
+            call.complete(v);
+            return v;
+        } catch (Throwable t) {
+            calls.remove(key, call);
+            call.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    /** Callers served without doing the work themselves since the last {@link #clear()}. */
+    int sharedCount() { return shared.get(); }
+
+    /** End of run: forget every remembered result (in-flight calls still complete for their waiters). */
+    void clear() {
+        calls.clear();
+        shared.set(0);
+    }
+}
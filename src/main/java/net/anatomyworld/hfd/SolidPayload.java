@@ -0,0 +1,238 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Optional high-ratio payload ({@code gradle -PpayloadFormat=xz}): every embedded .jar.bin
+ * concatenated into one solid stream, cut into independently compressed XZ (LZMA2) chunks in
+ * {@code embedded/payload.xz}, described by {@code embedded/payload.json}.
+ *
+ * <p>The compressed stream is read once, front to back, straight from the installer jar; each
+ * chunk is handed to a worker that decodes it and writes the bytes into its destination files at
+ * their offsets (positional writes, so chunks finish in any order). Unpacked files are SHA-512
+ * checked and moved into the {@link ArtifactStore}, from where they are linked into place.
+ * Everything is unpacked once per process, and not at all if the store already has it.
+ */
+final class SolidPayload {
+
+    static final String INDEX = "/embedded/payload.json";
+    static final String DATA = "/embedded/payload.xz";
+
+    /** One file's range in the uncompressed solid stream. */
+    record FileSpan(String path, long offset, long size, String sha512) {}
+
+    /** One independently decodable chunk: {@code compressedSize} bytes in payload.xz → [offset, offset+size). */
+    record Chunk(long compressedSize, long offset, long size) {}
+
+    private static final Object LOCK = new Object();
+    private static SolidPayload shared;
+    private static boolean loaded;
+
+    private final List<FileSpan> files;
+    private final long[] starts;
+    private final List<Chunk> chunks;
+    private final ArtifactStore.Source data;   // the compressed stream, read front to back once
+    private final ArtifactStore store;         // null = the shared store at unpack time
+    private final Map<String, FileSpan> byPath = new HashMap<>();
+    private Map<String, Path> unpacked; // zip path → store object, after the first unpack
+
+    private SolidPayload(List<FileSpan> files, List<Chunk> chunks, ArtifactStore.Source data, ArtifactStore store) {
+        this.files = files;
+        this.chunks = chunks;
+        this.data = data;
+        this.store = store;
+        this.starts = new long[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            starts[i] = files.get(i).offset();
+            byPath.put(files.get(i).path(), files.get(i));
+        }
+    }
+
+    /** The solid payload of this installer, or null if it was built in the default (plain zip) format. */
+    static SolidPayload get() {
+        synchronized (LOCK) {
+            if (!loaded) {
+                loaded = true;
+                try (InputStream in = Main.class.getResourceAsStream(INDEX)) {
+                    if (in != null) shared = of(Main.JSON.readTree(in), () -> Main.class.getResourceAsStream(DATA), null);
+                } catch (IOException e) {
+                    shared = null; // treat an unreadable index like a plain build; extraction then reports missing entries
+                }
+            }
+            return shared;
+        }
+    }
+
+    /** A payload described by {@code root} (payload.json) over {@code data} (payload.xz), unpacking into {@code store}. */
+    static SolidPayload of(JsonNode root, ArtifactStore.Source data, ArtifactStore store) {
+        List<FileSpan> files = new ArrayList<>();
+        for (JsonNode n : root.path("files")) {
+            files.add(new FileSpan(n.path("path").asText(), n.path("offset").asLong(), n.path("size").asLong(), n.path("sha512").asText()));
+        }
+        files.sort(Comparator.comparingLong(FileSpan::offset));
+        List<Chunk> chunks = new ArrayList<>();
+        for (JsonNode n : root.path("chunks")) {
+            chunks.add(new Chunk(n.path("compressedSize").asLong(), n.path("offset").asLong(), n.path("size").asLong()));
+        }
+        return new SolidPayload(files, chunks, data, store);
+    }
+
+    boolean contains(String path) { return byPath.containsKey(path); }
+
+    /** Store object holding {@code path} (zip path, e.g. embedded/mods/x.jar.bin); unpacks on first use. */
+    synchronized Path object(String path) throws IOException {
+        if (!contains(path)) throw new FileNotFoundException(path + " is not in the solid payload");
+        if (unpacked == null) unpacked = unpackAll();
+        return unpacked.get(path);
+    }
+
+    // ----------- Unpacking ------------
+
+    private Map<String, Path> unpackAll() throws IOException {
+        ArtifactStore store = this.store != null ? this.store : ArtifactStore.shared();
+        Map<String, Path> out = new HashMap<>();
+        List<FileSpan> missing = new ArrayList<>();
+        for (FileSpan f : files) {
+            Path obj = store.find(f.sha512());
+            if (obj != null) out.put(f.path(), obj); else missing.add(f);
+        }
+        if (missing.isEmpty()) return out;
+
+        Files.createDirectories(store.root());
+        Path tmpDir = Files.createTempDirectory(store.root(), "unpack-");
+        Map<FileSpan, FileChannel> channels = new HashMap<>();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "payload-decode");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (FileSpan f : missing) {
+                channels.put(f, FileChannel.open(tmpDir.resolve(Integer.toString(channels.size())),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+            }
+            Flight.Extract extract = new Flight.Extract();
+            extract.begin();
+            decode(channels, pool, threads * 2);
+            for (FileChannel ch : channels.values()) ch.close();
+            if (extract.shouldCommit()) {
+                extract.file = DATA;
+                extract.source = "solid";
+                extract.bytes = missing.stream().mapToLong(FileSpan::size).sum();
+                extract.commit();
+            }
+
+            int i = 0;
+            for (FileSpan f : missing) {
+                Path tmp = tmpDir.resolve(Integer.toString(i++));
+                Flight.Verify verify = new Flight.Verify();
+                verify.begin();
+                String got = ModIndex.hash(tmp)[1];
+                boolean match = got.equalsIgnoreCase(f.sha512());
+                Flight.commit(verify, tmp, match);
+                if (!match) throw new IOException("SHA-512 mismatch unpacking " + f.path());
+                out.put(f.path(), store.ingest(tmp, got));
+            }
+            return out;
+        } finally {
+            pool.shutdownNow();
+            for (FileChannel ch : channels.values()) {
+                try { ch.close(); } catch (IOException ignored) {}
+            }
+            try (var s = Files.list(tmpDir)) {
+                for (Path p : (Iterable<Path>) s::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(tmpDir);
+        }
+    }
+
+    /** Stream payload.xz once; decode chunks that touch a wanted file on the pool (at most {@code inFlight} buffered). */
+    private void decode(Map<FileSpan, FileChannel> wanted, ExecutorService pool, int inFlight) throws IOException {
+        Semaphore permits = new Semaphore(inFlight);
+        List<Future<?>> pending = new ArrayList<>();
+        try (InputStream raw = data.open()) {
+            if (raw == null) throw new FileNotFoundException(DATA + " missing from the installer");
+            InputStream in = new BufferedInputStream(raw, 1 << 20);
+            for (Chunk c : chunks) {
+                Cancellation.current().check();
+                if (!touchesAny(c, wanted.keySet())) {
+                    in.skipNBytes(c.compressedSize());
+                    continue;
+                }
+                byte[] packed = in.readNBytes(Math.toIntExact(c.compressedSize()));
+                if (packed.length != c.compressedSize()) throw new EOFException("payload.xz is truncated");
+                permits.acquire();
+                pending.add(pool.submit(() -> {
+                    try {
+                        decodeChunk(c, packed, wanted);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : pending) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("payload unpack interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("payload unpack failed", e.getCause());
+        }
+    }
+
+    private void decodeChunk(Chunk c, byte[] packed, Map<FileSpan, FileChannel> wanted) throws IOException {
+        byte[] buf = new byte[1 << 20];
+        long pos = c.offset();
+        try (InputStream xz = new XZInputStream(new ByteArrayInputStream(packed))) {
+            int n;
+            while ((n = xz.readNBytes(buf, 0, buf.length)) > 0) {
+                write(buf, n, pos, wanted);
+                pos += n;
+            }
+        }
+        if (pos != c.offset() + c.size()) throw new IOException("payload chunk at " + c.offset() + " decoded to the wrong size");
+    }
+
+    /** Scatter solid-stream bytes [pos, pos+n) into the wanted files they belong to. */
+    private void write(byte[] buf, int n, long pos, Map<FileSpan, FileChannel> wanted) throws IOException {
+        long end = pos + n;
+        for (int i = firstAt(pos); i < files.size() && files.get(i).offset() < end; i++) {
+            FileSpan f = files.get(i);
+            FileChannel ch = wanted.get(f);
+            if (ch == null) continue;
+            long from = Math.max(pos, f.offset());
+            long to = Math.min(end, f.offset() + f.size());
+            if (from >= to) continue;
+            ByteBuffer bb = ByteBuffer.wrap(buf, (int) (from - pos), (int) (to - from));
+            long at = from - f.offset();
+            while (bb.hasRemaining()) at += ch.write(bb, at);
+        }
+    }
+
+    private boolean touchesAny(Chunk c, Set<FileSpan> wanted) {
+        long end = c.offset() + c.size();
+        for (int i = firstAt(c.offset()); i < files.size() && files.get(i).offset() < end; i++) {
+            if (wanted.contains(files.get(i))) return true;
+        }
+        return false;
+    }
+
+    /** Index of the last file starting at or before {@code pos}. */
+    private int firstAt(long pos) {
+        int i = Arrays.binarySearch(starts, pos);
+        if (i < 0) i = -i - 2;
+        // several empty files can share an offset: step back to the first of them
+        while (i > 0 && starts[i - 1] == starts[i]) i--;
+        return Math.max(i, 0);
+    }
+}
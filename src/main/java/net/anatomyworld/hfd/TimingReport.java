@@ -0,0 +1,82 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Collects phase durations, bytes, cache hits and retries; written as JSON after each run. */
+final class TimingReport implements InstallEvent.Listener {
+
+    private record PhaseTime(long nanos, boolean ok) {}
+
+    private final Instant started = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, PhaseTime> phases = new LinkedHashMap<>();
+    private final List<String> errors = new ArrayList<>();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong bytesPlaced = new AtomicLong();
+    private final AtomicLong filesPlaced = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    @Override public void on(InstallEvent e) {
+        if (e instanceof InstallEvent.PhaseFinished p) {
+            synchronized (phases) { phases.merge(p.phase(), new PhaseTime(p.nanos(), p.ok()),
+                    (a, b) -> new PhaseTime(a.nanos() + b.nanos(), a.ok() && b.ok())); }
+        } else if (e instanceof InstallEvent.DownloadProgress d && d.done()) {
+            bytesDownloaded.addAndGet(d.bytes());
+            downloads.incrementAndGet();
+        } else if (e instanceof InstallEvent.FilePlaced f) {
+            bytesPlaced.addAndGet(f.bytes());
+            filesPlaced.incrementAndGet();
+        } else if (e instanceof InstallEvent.CacheHit) {
+            cacheHits.incrementAndGet();
+        } else if (e instanceof InstallEvent.Retry) {
+            retries.incrementAndGet();
+        } else if (e instanceof InstallEvent.Error err) {
+            synchronized (errors) { errors.add(err.phase() + ": " + err.message()); }
+        }
+    }
+
+    long retries()        { return retries.get(); }
+    long cacheHits()      { return cacheHits.get(); }
+    long bytesDownloaded() { return bytesDownloaded.get(); }
+
+    ObjectNode toJson(boolean success) {
+        ObjectNode root = Main.JSON.createObjectNode();
+        root.put("started", started.toString());
+        root.put("success", success);
+        root.put("totalMs", (System.nanoTime() - startNanos) / 1_000_000L);
+        ObjectNode ph = root.putObject("phases");
+        synchronized (phases) {
+            phases.forEach((name, t) -> {
+                ObjectNode n = ph.putObject(name);
+                n.put("ms", t.nanos() / 1_000_000L);
+                n.put("ok", t.ok());
+            });
+        }
+        root.put("downloads", downloads.get());
+        root.put("bytesDownloaded", bytesDownloaded.get());
+        root.put("filesPlaced", filesPlaced.get());
+        root.put("bytesPlaced", bytesPlaced.get());
+        root.put("cacheHits", cacheHits.get());
+        root.put("retries", retries.get());
+        var errs = root.putArray("errors");
+        synchronized (errors) { errors.forEach(errs::add); }
+        return root;
+    }
+
+    void write(Path file, boolean success) throws IOException {
+        Files.createDirectories(file.getParent());
+        Main.JSON.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), toJson(success));
+    }
+}
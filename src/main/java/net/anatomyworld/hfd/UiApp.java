@@ -16,8 +16,10 @@ import java.awt.image.BufferedImage;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 public class UiApp extends Main {
 
@@ -39,7 +41,16 @@ public class UiApp extends Main {
     private static final Color BTN_BG         = LOG_BG_SOLID;
     private static final Color BTN_FG         = TXT_PRIMARY;
 
+    // Lines kept in the log area; the full log goes to LogSink's file
+    private static final int LOG_MAX_LINES    = 1000;
+
+    // How long closing the window waits for a running install to abort cleanly
+    private static final Duration ABORT_LIMIT = Duration.ofSeconds(5);
+
     private JTextArea logArea;
+    private LogSink logSink;
+    private Prefetcher prefetcher;     // store-only speculative work until Install is clicked
+    private final InstallService service = new InstallService(); // the running install/repair, abortable
     private JLabel pathLabel;
     private BananaBar bananaBar;
     private HaloOnHoverButton installBtn; // CHANGED: keep the subtype so we can stop its animation
@@ -108,8 +119,13 @@ public class UiApp extends Main {
                 }
             }
         });
+        JLabel repair = linkLabelPlain("Verify / repair");
+        repair.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) { runRepairAsync(f); }
+        });
         pathRow.add(pathLabel);
         pathRow.add(change);
+        pathRow.add(repair);
 
         installBtn = new HaloOnHoverButton("Install");
         installBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -118,6 +134,7 @@ public class UiApp extends Main {
 
         bananaBar = new BananaBar(loadBananaImage());
         bananaBar.setAlignmentX(Component.CENTER_ALIGNMENT);
+        bananaBar.setFont(uiFont.deriveFont(Font.PLAIN, 12f));
         bananaBar.setVisible(false);
 
         center.add(Box.createVerticalGlue());
@@ -155,6 +172,7 @@ public class UiApp extends Main {
         sp.getViewport().setOpaque(false);
         sp.setBorder(BorderFactory.createEmptyBorder());
         logCard.add(sp, BorderLayout.CENTER);
+        logSink = new LogSink(logArea, LOG_MAX_LINES, LogSink.defaultLogFile());
 
         root.add(center, BorderLayout.CENTER);
         root.add(logCard, BorderLayout.SOUTH);
@@ -162,70 +180,96 @@ public class UiApp extends Main {
         installBtn.addActionListener(e -> runInstallAsync(f));
 
         f.setContentPane(root);
+        AnimationClock.shared().attach(f); // pause all animation while minimised/hidden
         f.setVisible(true);
 
-        // Also ensure timers stop on JVM shutdown (belt & suspenders)
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            bananaBar.setRunning(false);
-            installBtn.stopHalo();
-        }, "shutdown-cleanup"));
+        prefetcher = new Prefetcher(logSink);
+        prefetcher.start();
     }
 
     // ---------- actions ----------
 
     private void runInstallAsync(JFrame f) {
+        prefetcher.cancel(); // the install takes over; everything prefetched so far is reused
+        installBtn.setEnabled(false);
+        InstallProgress progress = new InstallProgress();
+        bananaBar.setModel(progress);
+        bananaBar.setVisible(true);
+        bananaBar.setRunning(true);
+
+        Path mc = Paths.get(expandPathFromLabel(pathLabel.getText(), defaultMinecraftDir().toString()));
+        service.submit("installer", () -> {
+            prefetcher.cancelAndWait();
+            logSink.line("Full log: " + logSink.logFile());
+            new Installer().runInstall(mc, new InstallEvents(logSink).listen(progress));
+            return null;
+        }).whenComplete((done, ex) -> SwingUtilities.invokeLater(() -> {
+            // Stop & hide progress BEFORE the dialog
+            bananaBar.setRunning(false);
+            bananaBar.setVisible(false);
+            if (ex instanceof CancellationException) return; // window closing: nobody to tell
+            if (ex != null) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(
+                        f,
+                        "Installation failed:\n" + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                );
+                installBtn.setEnabled(true);
+                return;
+            }
+            int sel = JOptionPane.showOptionDialog(
+                    f,
+                    "HFD installed, Open or Restart the Minecraft Launcher ",
+                    "Done",
+                    JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.INFORMATION_MESSAGE,
+                    null,
+                    new Object[]{"OK"},
+                    "OK"
+            );
+            if (sel == JOptionPane.OK_OPTION || sel == 0) {
+                switchInstallButtonToDone();
+            } else {
+                installBtn.setEnabled(true);
+            }
+        }));
+    }
+
+    /** Check an existing install and fix only what differs (no full reinstall). */
+    private void runRepairAsync(JFrame f) {
+        if (!installBtn.isEnabled() || service.busy()) return; // install or repair already running
+        prefetcher.cancel();
         installBtn.setEnabled(false);
+        bananaBar.setModel(null); // verify has no byte/step model: keep the bounce
         bananaBar.setVisible(true);
         bananaBar.setRunning(true);
 
-        Thread t = new Thread(() -> {
-            try {
-                Path mc = Paths.get(expandPathFromLabel(pathLabel.getText(), defaultMinecraftDir().toString()));
-                Installer.Log logger = s -> SwingUtilities.invokeLater(() -> {
-                    logArea.append(s + "\n");
-                    logArea.setCaretPosition(logArea.getDocument().getLength());
-                });
-                new Installer().runInstall(mc, logger);
-
-                SwingUtilities.invokeLater(() -> {
-                    // Stop & hide progress BEFORE the dialog
+        Path mc = Paths.get(expandPathFromLabel(pathLabel.getText(), defaultMinecraftDir().toString()));
+        service.submit("verifier", () -> {
+                    prefetcher.cancelAndWait();
+                    return new PackVerifier().run(mc, true, logSink);
+                })
+                .whenComplete((r, ex) -> SwingUtilities.invokeLater(() -> {
                     bananaBar.setRunning(false);
                     bananaBar.setVisible(false);
-
-                    int sel = JOptionPane.showOptionDialog(
-                            f,
-                            "HFD installed, Open or Restart the Minecraft Launcher ",
-                            "Done",
-                            JOptionPane.DEFAULT_OPTION,
-                            JOptionPane.INFORMATION_MESSAGE,
-                            null,
-                            new Object[]{"OK"},
-                            "OK"
-                    );
-                    if (sel == JOptionPane.OK_OPTION || sel == 0) {
-                        switchInstallButtonToDone();
+                    if (ex instanceof CancellationException) return;
+                    String msg;
+                    int type;
+                    if (ex != null) {
+                        ex.printStackTrace();
+                        msg = "Verify failed:\n" + ex.getMessage();
+                        type = JOptionPane.ERROR_MESSAGE;
                     } else {
-                        installBtn.setEnabled(true);
+                        msg = r.ok()
+                                ? (r.issues().isEmpty() ? "Everything is intact." : "Repaired " + r.issues().size() + " problem(s).")
+                                : "Some problems could not be repaired — see the log.";
+                        type = r.ok() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE;
                     }
-                });
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                SwingUtilities.invokeLater(() ->
-                        JOptionPane.showMessageDialog(
-                                f,
-                                "Installation failed:\n" + ex.getMessage(),
-                                "Error",
-                                JOptionPane.ERROR_MESSAGE
-                        )
-                );
-                SwingUtilities.invokeLater(() -> {
+                    JOptionPane.showMessageDialog(f, msg, "Verify / repair", type);
                     installBtn.setEnabled(true);
-                    bananaBar.setRunning(false);
-                    bananaBar.setVisible(false);
-                });
-            }
-        }, "installer");
-        t.start();
+                }));
     }
 
     private void switchInstallButtonToDone() {
@@ -237,12 +281,19 @@ public class UiApp extends Main {
         installBtn.addActionListener(evt -> shutdownAndExit()); // CHANGED: hard exit to release JAR lock
     }
 
-    /** Cleanly stop animations and terminate the VM so Windows releases the JAR. */
+    /**
+     * Cleanly stop animations, abort a running install (bounded: it rolls back its launcher files
+     * and deletes its temp files first) and terminate the VM so Windows releases the JAR.
+     */
     private void shutdownAndExit() {
+        Window w = SwingUtilities.getWindowAncestor(installBtn);
+        if (w != null) w.setVisible(false); // feels instant while the abort unwinds
         try { bananaBar.setRunning(false); } catch (Exception ignored) {}
         try { installBtn.stopHalo(); } catch (Exception ignored) {}
-        // Dispose any window (optional)
-        Window w = SwingUtilities.getWindowAncestor(installBtn);
+        try { if (prefetcher != null) prefetcher.cancel(); } catch (Exception ignored) {}
+        if (!service.abort(ABORT_LIMIT)) logSink.line("Install did not stop within " + ABORT_LIMIT.toSeconds() + " s; exiting anyway.");
+        try { logSink.close(); } catch (Exception ignored) {}
+        AnimationClock.shared().stop();
         if (w != null) w.dispose();
         System.exit(0); // guarantees process ends, releasing any file locks on the running JAR (Windows)
     }
@@ -353,19 +404,15 @@ public class UiApp extends Main {
     private List<Image> makeIconVariants(BufferedImage base) {
         int[] sizes = {16, 20, 24, 32, 40, 48, 64, 128, 256};
         List<Image> variants = new ArrayList<>(sizes.length);
-        for (int s : sizes) variants.add(base.getScaledInstance(s, s, Image.SCALE_SMOOTH));
+        for (int s : sizes) variants.add(RenderCache.scaled(base, s, s));
         return variants;
     }
 
     private static Image makeRounded(BufferedImage src, int size, int arc) {
-        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = scaled.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g.drawImage(src, 0, 0, size, size, null);
-        g.dispose();
+        BufferedImage scaled = RenderCache.scaled(src, size, size);
 
         BufferedImage out = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
-        g = out.createGraphics();
+        Graphics2D g = out.createGraphics();
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         Shape clip = new RoundRectangle2D.Float(0, 0, size, size, arc, arc);
         g.setClip(clip);
@@ -385,124 +432,226 @@ public class UiApp extends Main {
     private static final class GradientBackground extends JPanel {
         private final Color[] colors;
         private final float[] fractions;
+        private final RenderCache.Layer layer = new RenderCache.Layer(this::paintGradient, false);
         GradientBackground(Color[] colors, float[] fracs) { this.colors = colors; this.fractions = fracs; setOpaque(false); }
-        @Override protected void paintComponent(Graphics g) {
-            int w = getWidth(), h = getHeight();
-            Graphics2D g2 = (Graphics2D) g.create();
+        private void paintGradient(Graphics2D g2, int w, int h) {
             g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            Paint gp = new LinearGradientPaint(0, 0, w, h, fractions, colors);
-            g2.setPaint(gp);
+            g2.setPaint(new LinearGradientPaint(0, 0, w, h, fractions, colors));
             g2.fillRect(0, 0, w, h);
-            g2.dispose();
+        }
+        @Override protected void paintComponent(Graphics g) {
+            layer.draw(g, this);
             super.paintComponent(g);
         }
     }
 
     private static final class GlassCard extends JPanel {
         private final Color bg;
+        private final RenderCache.Layer layer = new RenderCache.Layer(this::paintCard, true);
         GlassCard(Color bg) { this.bg = bg; setOpaque(false); }
-        @Override protected void paintComponent(Graphics g) {
-            int w = getWidth(), h = getHeight();
-            Graphics2D g2 = (Graphics2D) g.create();
+        private void paintCard(Graphics2D g2, int w, int h) {
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             g2.setColor(bg);
             g2.fillRoundRect(0, 0, w, h, 16, 16);
-            g2.dispose();
+        }
+        @Override protected void paintComponent(Graphics g) {
+            layer.draw(g, this);
             super.paintComponent(g);
         }
     }
 
     /** A slim, animated “banana” progress bar. */
-    private static final class BananaBar extends JComponent {
+    private static final class BananaBar extends JComponent implements AnimationClock.Animated {
+        private static final Color TRACK = new Color(255, 255, 255, 38);
+        private static final Color FILL  = new Color(255, 235, 130, 70);
+        private static final Color DOT   = new Color(255, 235, 130);
+        private static final Color CAPTION = new Color(0xD1BC8C);
+        private static final int TRAIL_STEPS = 6;
+        private static final int BAR_H = 18;
+        private static final long SAMPLE_NANOS = 250_000_000L; // read the progress model at most 4×/s
+        private static final AlphaComposite[] TRAIL = new AlphaComposite[TRAIL_STEPS + 1];
+        static {
+            for (int i = 1; i <= TRAIL_STEPS; i++) TRAIL[i] = AlphaComposite.SrcOver.derive((i / (float) TRAIL_STEPS) * 0.15f);
+        }
+
         private final Image bananaSrc;
         private float pos = 0f;
         private float dir = 1f;
         private boolean running = false;
-        private final javax.swing.Timer timer;
+
+        // determinate mode (model != null): pos eases towards the sampled fraction
+        private InstallProgress model;
+        private float target = 0f;
+        private long lastSample;
+        private String caption = "";
 
         BananaBar(Image banana) {
             this.bananaSrc = banana;
             setOpaque(false);
-            setPreferredSize(new Dimension(260, 18));
-            int fps = 60;
-            timer = new javax.swing.Timer(1000 / fps, e -> {
-                if (!running) return;
-                pos += dir * 0.02f;
-                if (pos > 1f) { pos = 1f; dir = -1f; }
-                if (pos < 0f) { pos = 0f; dir = 1f; }
-                repaint();
-            });
-            timer.setCoalesce(true);
+            setPreferredSize(new Dimension(300, BAR_H + 18));
+        }
+
+        /** Show real progress from {@code m}; null = indeterminate bouncing. */
+        void setModel(InstallProgress m) {
+            model = m;
+            pos = 0f;
+            target = 0f;
+            dir = 1f;
+            lastSample = 0;
+            caption = "";
+            repaint();
         }
 
         void setRunning(boolean r) {
             running = r;
-            if (r) { if (!timer.isRunning()) timer.start(); }
-            else    { if (timer.isRunning())  timer.stop(); }
+            if (r) AnimationClock.shared().register(this);
+            else   AnimationClock.shared().unregister(this);
             repaint();
         }
 
+        @Override public boolean tick() {
+            if (!running) return false;
+            if (model != null) return tickDeterminate();
+            Rectangle before = spriteBounds();
+            pos += dir * 0.02f;
+            if (pos > 1f) { pos = 1f; dir = -1f; }
+            if (pos < 0f) { pos = 0f; dir = 1f; }
+            repaint(before.union(spriteBounds()));
+            return true;
+        }
+
+        private boolean tickDeterminate() {
+            long now = System.nanoTime();
+            if (now - lastSample >= SAMPLE_NANOS) {
+                lastSample = now;
+                InstallProgress.Snapshot snap = model.snapshot();
+                target = (float) snap.fraction();
+                String c = caption(snap);
+                if (!c.equals(caption)) {
+                    caption = c;
+                    repaint(0, BAR_H, getWidth(), getHeight() - BAR_H);
+                }
+            }
+            float next = pos + (target - pos) * 0.12f;
+            if (Math.abs(next - pos) * getWidth() >= 0.5f) { // only repaint when it moves a pixel
+                pos = next;
+                repaint(0, 0, getWidth(), BAR_H);
+            }
+            return true;
+        }
+
+        private static String caption(InstallProgress.Snapshot s) {
+            StringBuilder sb = new StringBuilder();
+            String ph = s.phase() == null ? "" : s.phase().replace('-', ' ');
+            if (!ph.isEmpty()) sb.append(Character.toUpperCase(ph.charAt(0))).append(ph.substring(1));
+            sb.append(sb.length() > 0 ? " · " : "").append(Math.round(s.fraction() * 100)).append('%');
+            if (s.bytesPerSec() >= 10 * 1024) sb.append(" · ").append(String.format(java.util.Locale.ROOT, "%.1f MB/s", s.bytesPerSec() / 1e6));
+            long eta = s.etaSeconds();
+            if (eta >= 0) sb.append(" · ").append(eta < 10 ? "a few seconds left" : eta < 90 ? "~" + eta + " s left" : "~" + Math.round(eta / 60.0) + " min left");
+            return sb.toString();
+        }
+
+        private int spriteH() { return BAR_H - 4; }
+
+        /** Area covered by the banana and its trail at the current position. */
+        private Rectangle spriteBounds() {
+            int w = getWidth(), h = BAR_H;
+            if (bananaSrc == null) {
+                int x = (int) (pos * w);
+                return new Rectangle(x - 5, 0, 10, h);
+            }
+            int bW = spriteH();
+            int x = (int) (pos * (w - bW));
+            int trail = (int) Math.ceil(TRAIL_STEPS * (w / 100.0));
+            return new Rectangle(x - trail - 1, 0, bW + 2 * trail + 2, h);
+        }
+
         @Override protected void paintComponent(Graphics g) {
             Graphics2D g2 = (Graphics2D) g.create();
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
             int w = getWidth();
-            int h = getHeight();
+            int h = BAR_H;
             int radius = Math.min(12, h);
 
-            g2.setColor(new Color(255, 255, 255, 38));
+            g2.setColor(TRACK);
             g2.fillRoundRect(0, h/2 - 3, w, 6, radius, radius);
+            if (model != null) {
+                g2.setColor(FILL);
+                g2.fillRoundRect(0, h/2 - 3, Math.round(pos * w), 6, radius, radius);
+            }
 
             if (bananaSrc != null) {
-                int bH = Math.max(10, h - 4);
-                int bW = (int) (bH * 1.0);
+                int bH = spriteH();
+                int bW = bH;
                 int x = (int) (pos * (w - bW));
                 int y = (h - bH) / 2;
 
-                g2.setComposite(AlphaComposite.SrcOver.derive(0.15f));
-                int trailSteps = 6;
-                for (int i = trailSteps; i >= 1; i--) {
-                    int tx = (int) (x - (dir * i * (w / 100.0)));
-                    float alpha = (i / (float)trailSteps) * 0.15f;
-                    g2.setComposite(AlphaComposite.SrcOver.derive(alpha));
-                    g2.drawImage(bananaSrc, tx, y, bW, bH, null);
+                Image sprite = RenderCache.scaled(bananaSrc, bW, bH);
+                if (model == null) {
+                    for (int i = TRAIL_STEPS; i >= 1; i--) {
+                        int tx = (int) (x - (dir * i * (w / 100.0)));
+                        g2.setComposite(TRAIL[i]);
+                        g2.drawImage(sprite, tx, y, null);
+                    }
+                    g2.setComposite(AlphaComposite.SrcOver);
                 }
-                g2.setComposite(AlphaComposite.SrcOver);
-                g2.drawImage(bananaSrc, x, y, bW, bH, null);
+                g2.drawImage(sprite, x, y, null);
             } else {
-                g2.setColor(new Color(255, 235, 130));
+                g2.setColor(DOT);
                 int x = (int) (pos * w);
                 g2.fillOval(x - 4, h/2 - 4, 8, 8);
             }
+
+            if (model != null && !caption.isEmpty()) {
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2.setFont(getFont());
+                g2.setColor(CAPTION);
+                FontMetrics fm = g2.getFontMetrics();
+                g2.drawString(caption, (w - fm.stringWidth(caption)) / 2, h + fm.getAscent() + 1);
+            }
             g2.dispose();
         }
     }
 
     /** JButton with a smooth, subtle halo on hover/press (no size or color change). */
-    private static final class HaloOnHoverButton extends JButton {
+    private static final class HaloOnHoverButton extends JButton implements AnimationClock.Animated {
+        private static final Color HALO_COLOR = new Color(0xE2, 0xCF, 0xA6);
         private float halo = 0f;
-        private final javax.swing.Timer anim;
-        private final Color haloColor = new Color(0xE2, 0xCF, 0xA6);
+        private boolean stopped = false;
 
         HaloOnHoverButton(String text) {
             super(text);
             setOpaque(false);
             setRolloverEnabled(true);
 
-            anim = new javax.swing.Timer(16, e -> {
-                ButtonModel m = getModel();
-                float target = m.isPressed() ? 1.0f : (m.isRollover() ? 0.7f : 0f);
-                halo += (target - halo) * 0.18f;
-                if (Math.abs(target - halo) < 0.005f) halo = target;
-                if (halo > 0f) repaint();
-                else if (m.isRollover() || m.isPressed()) repaint();
+            // only animate while the rollover/pressed target changes, until the halo settles
+            getModel().addChangeListener(e -> {
+                if (!stopped && Math.abs(target() - halo) >= 0.005f) AnimationClock.shared().register(this);
             });
-            anim.start();
 
             setMargin(new Insets(8, 22, 8, 22));
         }
 
-        void stopHalo() { anim.stop(); } // allow caller to stop the animation timer
+        void stopHalo() { // allow caller to stop the animation
+            stopped = true;
+            AnimationClock.shared().unregister(this);
+        }
+
+        private float target() {
+            ButtonModel m = getModel();
+            return m.isPressed() ? 1.0f : (m.isRollover() ? 0.7f : 0f);
+        }
+
+        @Override public boolean tick() {
+            if (stopped) return false;
+            float target = target();
+            halo += (target - halo) * 0.18f;
+            boolean settled = Math.abs(target - halo) < 0.005f;
+            if (settled) halo = target;
+            repaint();
+            return !settled;
+        }
 
         @Override protected void paintComponent(Graphics g) {
             Graphics2D g2 = (Graphics2D) g.create();
@@ -511,10 +660,10 @@ public class UiApp extends Main {
             if (halo > 0f) {
                 int w = getWidth(), h = getHeight();
                 int arc = 8;
+                g2.setColor(HALO_COLOR);
                 for (int i = 6; i >= 1; i--) {
                     float a = halo * (i / 60f);
                     g2.setComposite(AlphaComposite.SrcOver.derive(a));
-                    g2.setColor(haloColor);
                     g2.fillRoundRect(-i, -i, w + 2*i, h + 2*i, arc + i*2, arc + i*2);
                 }
                 g2.setComposite(AlphaComposite.SrcOver);
@@ -0,0 +1,171 @@
+package net.anatomyworld.hfd;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArtifactStoreTest {
+
+    @TempDir Path tmp;
+
+    private static String sha512(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-512").digest(data));
+    }
+
+    private Path write(String name, byte[] data) throws Exception {
+        Path p = tmp.resolve(name);
+        Files.write(p, data);
+        return p;
+    }
+
+    @Test
+    void ingestThenFindAndPlace() throws Exception {
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        byte[] data = "mod bytes".getBytes();
+        String sha = sha512(data);
+
+        Path obj = store.ingest(write("a.jar", data), sha);
+        assertEquals(obj, store.find(sha));
+        assertFalse(Files.exists(tmp.resolve("a.jar")), "ingest moves the file");
+
+        Path dest = tmp.resolve("game/mods/a.jar");
+        store.place(sha, dest);
+        assertArrayEquals(data, Files.readAllBytes(dest));
+    }
+
+    @Test
+    void ingestOfKnownObjectDropsTheDuplicate() throws Exception {
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        byte[] data = "same".getBytes();
+        String sha = sha512(data);
+        Path first = store.ingest(write("a", data), sha);
+        Path second = store.ingest(write("b", data), sha);
+        assertEquals(first, second);
+        assertFalse(Files.exists(tmp.resolve("b")));
+    }
+
+    @Test
+    void objectChangedSinceIngestIsDropped() throws Exception {
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        byte[] data = "original".getBytes();
+        String sha = sha512(data);
+        Path obj = store.ingest(write("a", data), sha);
+        Files.write(obj, "tampered!".getBytes()); // e.g. written through a hard link
+        assertNull(store.find(sha));
+        assertFalse(Files.exists(obj));
+    }
+
+    @Test
+    void unindexedObjectIsLeftForGc() throws Exception {
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        byte[] data = "orphan".getBytes();
+        String sha = sha512(data);
+        Path orphan = tmp.resolve("store/objects").resolve(sha.substring(0, 2)).resolve(sha);
+        Files.createDirectories(orphan.getParent());
+        Files.write(orphan, data);
+
+        assertNull(store.find(sha));
+        assertTrue(Files.exists(orphan), "find must not delete what it has no entry for");
+
+        assertEquals(0, store.gc(Duration.ofDays(1)), "still inside the grace period");
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(2).toMillis()));
+        assertEquals(1, store.gc(Duration.ofDays(1)));
+        assertFalse(Files.exists(orphan));
+    }
+
+    @Test
+    void gcKeepsPlacedObjects() throws Exception {
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        byte[] kept = "kept".getBytes();
+        byte[] unused = "unused".getBytes();
+        store.ingest(write("k", kept), sha512(kept));
+        store.ingest(write("u", unused), sha512(unused));
+        store.place(sha512(kept), tmp.resolve("mods/k.jar"));
+
+        assertEquals(1, store.gc(Duration.ZERO));
+        assertNotNull(store.find(sha512(kept)));
+        assertNull(store.find(sha512(unused)));
+    }
+
+    @Test
+    void lookupsAndRepeatPlacementsDoNotRewriteTheIndex() throws Exception {
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        byte[] data = "often looked up".getBytes();
+        String sha = sha512(data);
+        store.ingest(write("a", data), sha);
+        Path dest = tmp.resolve("mods/a.jar");
+        store.place(sha, dest);
+
+        Path index = tmp.resolve("store/index.json");
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        Files.setLastModifiedTime(index, old);
+        for (int i = 0; i < 20; i++) assertNotNull(store.find(sha));
+        store.place(sha, dest);
+        assertEquals(old, Files.getLastModifiedTime(index));
+
+        store.place(sha, tmp.resolve("other/mods/a.jar")); // a new placement is recorded
+        assertNotEquals(old, Files.getLastModifiedTime(index));
+    }
+
+    @Test
+    void changesByAnotherProcessAreSeen() throws Exception {
+        ArtifactStore mine = new ArtifactStore(tmp.resolve("store"));
+        ArtifactStore theirs = new ArtifactStore(tmp.resolve("store")); // same root, separate cache
+        byte[] data = "shared".getBytes();
+        String sha = sha512(data);
+        assertNull(mine.find(sha));
+
+        theirs.ingest(write("a", data), sha);
+        assertNotNull(mine.find(sha));
+
+        assertEquals(1, theirs.gc(Duration.ZERO));
+        assertNull(mine.find(sha));
+    }
+
+    /**
+     * Prefetch, LAN server and install threads on one store: lookups spinning on an object while
+     * its first ingest runs must never see it without its index entry (and delete it).
+     */
+    @Test
+    void concurrentFindNeverLosesAFreshIngest() throws Exception {
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            java.util.Random rnd = new java.util.Random(7);
+            for (int round = 0; round < 100; round++) {
+                byte[] data = new byte[32 * 1024];
+                rnd.nextBytes(data);
+                String sha = sha512(data);
+                Path in = write("in-" + round, data);
+                CountDownLatch go = new CountDownLatch(1);
+                java.util.concurrent.atomic.AtomicBoolean done = new java.util.concurrent.atomic.AtomicBoolean();
+                Callable<Object> finder = () -> {
+                    go.await();
+                    while (!done.get()) store.find(sha);
+                    return null;
+                };
+                Future<?> f1 = pool.submit(finder), f2 = pool.submit(finder);
+                go.countDown();
+                try {
+                    store.ingest(in, sha); // used to fail with NoSuchFileException
+                } finally {
+                    done.set(true);
+                }
+                f1.get(30, TimeUnit.SECONDS);
+                f2.get(30, TimeUnit.SECONDS);
+                assertNotNull(store.find(sha), "round " + round);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
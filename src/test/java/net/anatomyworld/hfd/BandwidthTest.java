@@ -0,0 +1,116 @@
+package net.anatomyworld.hfd;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BandwidthTest {
+
+    private static final int KIB = 1024;
+
+    private static byte[] random(int size) {
+        byte[] b = new byte[size];
+        new Random(7).nextBytes(b);
+        return b;
+    }
+
+    @Test
+    void unlimitedLeavesStreamsAlone() throws Exception {
+        Bandwidth bw = new Bandwidth(0);
+        InputStream in = new ByteArrayInputStream(new byte[10]);
+        assertFalse(bw.limited());
+        assertSame(in, bw.throttle(in, Bandwidth.Priority.CRITICAL));
+        bw.acquire(Bandwidth.Priority.OPTIONAL, Integer.MAX_VALUE); // never blocks
+    }
+
+    @Test
+    void throttledBytesAreUnchanged() throws Exception {
+        byte[] data = random(100 * KIB + 17);
+        try (InputStream in = new Bandwidth(64L * 1024 * KIB).throttle(new ByteArrayInputStream(data), Bandwidth.Priority.CRITICAL)) {
+            assertEquals(data[0] & 0xFF, in.read());
+            byte[] rest = in.readAllBytes();
+            assertEquals(data.length - 1, rest.length);
+            assertArrayEquals(Arrays.copyOfRange(data, 1, data.length), rest);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void readsArePacedToTheRate() throws Exception {
+        Bandwidth bw = new Bandwidth(256L * KIB); // burst: a quarter second's worth
+        byte[] data = random(320 * KIB);
+        long t0 = System.nanoTime();
+        try (InputStream in = bw.throttle(new ByteArrayInputStream(data), Bandwidth.Priority.CRITICAL)) {
+            assertEquals(data.length, in.readAllBytes().length);
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        // 64 KiB from the initial burst, the other 256 KiB at 256 KiB/s
+        assertTrue(seconds > 0.8 && seconds < 2.0, "took " + seconds + " s");
+    }
+
+    @Test
+    void shortReadsGiveBackWhatTheyDidNotUse() throws Exception {
+        Bandwidth bw = new Bandwidth(16L * KIB); // each read reserves a 16 KiB chunk: one second's worth
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(random(200))) {
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        long t0 = System.nanoTime();
+        try (InputStream in = bw.throttle(trickle, Bandwidth.Priority.CRITICAL)) {
+            byte[] buf = new byte[64 * KIB];
+            int total = 0;
+            for (int n; (n = in.read(buf, 0, buf.length)) > 0; ) total += n;
+            assertEquals(200, total);
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        assertTrue(seconds < 2.0, "200 one-byte reads took " + seconds + " s");
+    }
+
+    @Test
+    void higherPriorityIsServedFirst() throws Exception {
+        Bandwidth bw = new Bandwidth(64L * KIB); // burst = one 16 KiB chunk = 250 ms
+        bw.acquire(Bandwidth.Priority.CRITICAL, 16 * KIB); // empty the bucket
+
+        List<Bandwidth.Priority> order = new CopyOnWriteArrayList<>();
+        Thread optional = new Thread(() -> take(bw, Bandwidth.Priority.OPTIONAL, order));
+        Thread metadata = new Thread(() -> take(bw, Bandwidth.Priority.METADATA, order));
+        optional.start();
+        Thread.sleep(50); // the speculative download is already waiting…
+        metadata.start(); // …when an API call arrives
+        optional.join(5_000);
+        metadata.join(5_000);
+        assertEquals(List.of(Bandwidth.Priority.METADATA, Bandwidth.Priority.OPTIONAL), order);
+    }
+
+    @Test
+    void interruptedWaitIsACancelledDownload() throws Exception {
+        Bandwidth bw = new Bandwidth(16L * KIB);
+        bw.acquire(Bandwidth.Priority.CRITICAL, 16 * KIB);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, () -> bw.acquire(Bandwidth.Priority.CRITICAL, 16 * KIB));
+        } finally {
+            assertTrue(Thread.interrupted(), "interrupt status is kept");
+        }
+    }
+
+    private static void take(Bandwidth bw, Bandwidth.Priority p, List<Bandwidth.Priority> order) {
+        try {
+            bw.acquire(p, 16 * KIB);
+            order.add(p);
+        } catch (InterruptedIOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
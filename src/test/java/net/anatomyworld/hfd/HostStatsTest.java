@@ -0,0 +1,104 @@
+package net.anatomyworld.hfd;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostStatsTest {
+
+    private static final long MS = 1_000_000L;
+
+    @TempDir Path tmp;
+
+    private HostStats stats() { return new HostStats(tmp.resolve("host-stats.json")); }
+
+    @Test
+    void unknownHostsScoreTheSame() {
+        HostStats s = stats();
+        assertEquals(s.score("https://a.example/x.jar"), s.score("https://b.example/y.jar"), 1e-9);
+        assertEquals(s.score("https://a.example/x.jar"), s.score("not a url"), 1e-9);
+    }
+
+    @Test
+    void oneFailureIsOneSmoothingStep() {
+        HostStats once = stats();
+        HostStats twice = new HostStats(tmp.resolve("other.json"));
+        double prior = once.score("https://cdn.example/a.jar");
+        once.failure("https://cdn.example/a.jar");
+        twice.failure("https://cdn.example/a.jar");
+        twice.failure("https://cdn.example/a.jar");
+
+        double afterOne = once.score("https://cdn.example/a.jar");
+        assertTrue(afterOne > prior);
+        assertTrue(twice.score("https://cdn.example/a.jar") > afterOne);
+        // prior fail rate 5 %, one failure at EWMA weight 0.3: 0.05 + 0.3 * 0.95
+        assertEquals((1 - 0.05) / (1 - 0.335), afterOne / prior, 1e-3);
+    }
+
+    @Test
+    void hostIsKeyedByNameAndPort() {
+        HostStats s = stats();
+        s.failure("https://CDN.example:8443/a.jar");
+        assertEquals(s.score("https://cdn.example:8443/other.jar"), s.score("https://CDN.example:8443/a.jar"), 1e-9);
+        assertTrue(s.score("https://cdn.example:8443/a.jar") > s.score("https://cdn.example/a.jar"));
+    }
+
+    @Test
+    void fastHostsRankFirstAndTiesKeepTheirOrder() {
+        HostStats s = stats();
+        for (int i = 0; i < 5; i++) {
+            s.success("https://slow.example/a.jar", 800 * MS, 8 << 20, 8_000 * MS);
+            s.success("https://fast.example/a.jar", 20 * MS, 8 << 20, 400 * MS);
+        }
+        List<String> urls = List.of("https://new1.example/a.jar", "https://slow.example/a.jar",
+                "https://fast.example/a.jar", "https://new2.example/a.jar");
+        assertEquals(List.of("https://fast.example/a.jar", "https://new1.example/a.jar",
+                "https://new2.example/a.jar", "https://slow.example/a.jar"), s.rank(urls));
+    }
+
+    @Test
+    void smallBodiesSayNothingAboutBandwidth() {
+        HostStats s = stats();
+        // 1 KiB answers, same latency, one dribbled over a whole second: neither is a bandwidth sample
+        s.success("https://api1.example/v2", 300 * MS, 1024, 301 * MS);
+        s.success("https://api2.example/v2", 300 * MS, 1024, 1_300 * MS);
+        assertEquals(s.score("https://api1.example/v2"), s.score("https://api2.example/v2"), 1e-9);
+    }
+
+    @Test
+    void figuresSurviveARestart() throws Exception {
+        HostStats s = stats();
+        s.failure("https://cdn.example/a.jar");
+        s.success("https://fast.example/a.jar", 10 * MS, 8 << 20, 200 * MS);
+        s.save();
+        assertTrue(Files.isRegularFile(tmp.resolve("host-stats.json")));
+
+        HostStats again = stats();
+        assertEquals(s.score("https://cdn.example/a.jar"), again.score("https://cdn.example/a.jar"), 1e-6);
+        assertEquals(s.score("https://fast.example/a.jar"), again.score("https://fast.example/a.jar"), 1e-6);
+    }
+
+    @Test
+    void oldFiguresDecayTowardsThePrior() throws Exception {
+        long halfLifeAgo = System.currentTimeMillis() - HostStats.HALF_LIFE_MS;
+        Files.writeString(tmp.resolve("host-stats.json"), """
+                {"version":1,"hosts":{"down.example":{"latencyMs":300,"bytesPerSec":2000000,"failRate":1.0,"updated":%d}}}
+                """.formatted(halfLifeAgo));
+        HostStats s = stats();
+        double prior = s.score("https://unknown.example/a.jar");
+        // half way back from "always fails" to the 5 % prior
+        assertEquals((1 - 0.05) / (1 - 0.525), s.score("https://down.example/a.jar") / prior, 1e-3);
+    }
+
+    @Test
+    void corruptFileStartsOver() throws Exception {
+        Files.writeString(tmp.resolve("host-stats.json"), "{ not json");
+        HostStats s = stats();
+        assertEquals(s.score("https://a.example/"), s.score("https://b.example/"), 1e-9);
+    }
+}
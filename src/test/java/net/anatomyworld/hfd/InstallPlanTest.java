@@ -0,0 +1,158 @@
+package net.anatomyworld.hfd;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstallPlanTest {
+
+    private static final String NEO = Main.REQUIRED_NEOFORGE_ID;
+    private static final String LIB = "net/neoforged/fancymodloader/loader/1.0/loader-1.0.jar";
+
+    @TempDir Path mc;
+
+    private final List<String> lines = new ArrayList<>();
+    private final Installer.Log log = lines::add;
+
+    private InstallPlan plan(Installer installer) throws Exception {
+        Path gameDir = mc.resolve(Main.GAME_DIR_NAME);
+        return installer.plan(mc, gameDir, gameDir.resolve("mods"), log);
+    }
+
+    private void neoForge(boolean withLibrary) throws IOException { neoForge(NEO, withLibrary); }
+
+    /** versions/<id>/<id>.json listing one library; {@code withLibrary} also puts it under libraries/. */
+    private void neoForge(String id, boolean withLibrary) throws IOException {
+        Path dir = Files.createDirectories(mc.resolve("versions").resolve(id));
+        Files.writeString(dir.resolve(id + ".json"), "{\"id\":\"" + id + "\",\"libraries\":["
+                + "{\"name\":\"net.neoforged.fancymodloader:loader:1.0\",\"downloads\":{\"artifact\":{\"path\":\"" + LIB + "\"}}}]}");
+        if (withLibrary) {
+            Path lib = mc.resolve("libraries").resolve(LIB);
+            Files.createDirectories(lib.getParent());
+            Files.write(lib, new byte[] {1});
+        }
+    }
+
+    @Test
+    void emptyPlanLogsNothingToDo() {
+        InstallPlan p = new InstallPlan("neoforge-x");
+        assertTrue(p.isEmpty());
+        p.log(log);
+        assertTrue(lines.get(0).contains("nothing to do"));
+        assertEquals(Map.of(), p.toEvent().phases());
+    }
+
+    @Test
+    void eventListsStepsInApplyOrderWithExpectedItems() {
+        InstallPlan p = new InstallPlan(null);
+        p.add(InstallPlan.Step.SERVERS_DAT, "missing");
+        p.addAll(InstallPlan.Step.EXTERNAL_MODS, List.of("a", "b"));
+        p.add(InstallPlan.Step.NEOFORGE, "not installed");
+        p.expect(InstallPlan.Step.EXTERNAL_MODS, 12);
+        p.expect(InstallPlan.Step.OPTIONS, 1); // not planned: not in the event
+
+        assertTrue(p.needs(InstallPlan.Step.EXTERNAL_MODS));
+        assertFalse(p.needs(InstallPlan.Step.OPTIONS));
+        assertEquals(List.of("neoforge", "external-mods", "servers-dat"), new ArrayList<>(p.toEvent().phases().keySet()));
+        assertEquals(12, p.toEvent().phases().get("external-mods"));
+        assertEquals(0, p.toEvent().phases().get("neoforge"));
+    }
+
+    @Test
+    void logShowsAtMostThreeReasonsPerStep() {
+        InstallPlan p = new InstallPlan(null);
+        p.addAll(InstallPlan.Step.EMBEDDED_MODS, List.of("a.jar", "b.jar", "c.jar", "d.jar", "e.jar"));
+        p.log(log);
+        assertEquals("  embedded-mods: a.jar; b.jar; c.jar; +2 more", lines.get(1));
+    }
+
+    @Test
+    void freshMinecraftDirNeedsEverything() throws Exception {
+        InstallPlan p = plan(new Installer());
+        assertNull(p.neoId());
+        for (InstallPlan.Step s : List.of(InstallPlan.Step.NEOFORGE, InstallPlan.Step.CHILD_VERSION, InstallPlan.Step.OPTIONS,
+                InstallPlan.Step.PROFILES, InstallPlan.Step.SERVERS_DAT)) {
+            assertTrue(p.needs(s), s.name());
+        }
+    }
+
+    @Test
+    void completeNeoForgeIsNotReinstalled() throws Exception {
+        neoForge(true);
+        InstallPlan p = plan(new Installer());
+        assertEquals(NEO, p.neoId());
+        assertFalse(p.needs(InstallPlan.Step.NEOFORGE));
+    }
+
+    @Test
+    void versionDirWithoutItsLibrariesIsNotAnInstall() throws Exception {
+        neoForge(false);
+        Installer installer = new Installer();
+        assertNull(installer.findNeoForgeId(mc));
+        assertTrue(installer.neoForgeProblem(mc, NEO).contains("1 library missing"), installer.neoForgeProblem(mc, NEO));
+
+        InstallPlan p = plan(installer);
+        assertTrue(p.needs(InstallPlan.Step.NEOFORGE));
+        p.log(log);
+        assertTrue(String.join("\n", lines).contains("incomplete"), String.join("\n", lines));
+    }
+
+    @Test
+    void otherNeoForgeVersionIsNamedWhenReplaced() throws Exception {
+        neoForge("neoforge-21.8.10", true);
+        InstallPlan p = plan(new Installer());
+        assertTrue(p.needs(InstallPlan.Step.NEOFORGE));
+        assertEquals("neoforge-21.8.10", p.neoId());
+
+        Installer installer = new Installer() {
+            @Override protected Path locateBundledInstaller(Installer.Log log) { return mc.resolve("neoforge-installer.jar"); }
+            @Override protected void runInstallerJar(Path installer, Path mcDir, Installer.Log log) throws Exception {
+                throw new IOException("stop before installing");
+            }
+        };
+        assertThrows(IOException.class, () -> installer.runInstall(mc, log));
+        assertTrue(lines.contains("Found 'neoforge-21.8.10' but require '" + NEO + "'. Reinstalling…"), String.join("\n", lines));
+    }
+
+    @Test
+    void bareVersionDirIsNotAnInstall() throws Exception {
+        Files.createDirectories(mc.resolve("versions").resolve(NEO));
+        assertNull(new Installer().findNeoForgeId(mc));
+        assertTrue(plan(new Installer()).needs(InstallPlan.Step.NEOFORGE));
+    }
+
+    @Test
+    void libraryPathFromMavenName() {
+        assertEquals("net/neoforged/neoforge/21.8.39/neoforge-21.8.39-client.jar",
+                Main.libraryPath(Main.JSON.createObjectNode().put("name", "net.neoforged:neoforge:21.8.39:client")));
+        assertEquals("de/oceanlabs/mcp/mcp_config/1.21.8/mcp_config-1.21.8.zip",
+                Main.libraryPath(Main.JSON.createObjectNode().put("name", "de.oceanlabs.mcp:mcp_config:1.21.8@zip")));
+        assertNull(Main.libraryPath(Main.JSON.createObjectNode().put("name", "broken")));
+    }
+
+    /** A killed, stalled or failed NeoForge run must not leave a version dir the next plan would trust. */
+    @Test
+    void failedNeoForgeRunRemovesTheVersionDirItCreated() throws Exception {
+        Files.createDirectories(mc.resolve("versions").resolve("1.21.8")); // not ours to touch
+        Installer installer = new Installer() {
+            @Override protected Path locateBundledInstaller(Installer.Log log) { return mc.resolve("neoforge-installer.jar"); }
+            @Override protected void runInstallerJar(Path installer, Path mcDir, Installer.Log log) throws Exception {
+                neoForge(false); // version json written, libraries/processors never got to run
+                throw new IOException("NeoForge installer stalled");
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> installer.runInstall(mc, log));
+        assertTrue(e.getMessage().contains("stalled"));
+        assertFalse(Files.exists(mc.resolve("versions").resolve(NEO)));
+        assertTrue(Files.isDirectory(mc.resolve("versions").resolve("1.21.8")));
+        assertTrue(plan(new Installer()).needs(InstallPlan.Step.NEOFORGE));
+    }
+}
@@ -0,0 +1,172 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JarDeltaTest {
+
+    private static final long TIME = 1_700_000_000_000L;
+
+    @TempDir Path tmp;
+
+    /** A jar with these entries, in order, all with the same timestamp (as a reproducible build would). */
+    private Path jar(String name, Map<String, byte[]> entries) throws Exception {
+        Path p = tmp.resolve(name);
+        try (ZipOutputStream z = new ZipOutputStream(Files.newOutputStream(p))) {
+            for (var e : entries.entrySet()) {
+                ZipEntry ze = new ZipEntry(e.getKey());
+                ze.setTime(TIME);
+                z.putNextEntry(ze);
+                z.write(e.getValue());
+                z.closeEntry();
+            }
+        }
+        return p;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] b = new byte[size];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+
+    private static Map<String, byte[]> entries(Object... nameThenBytes) {
+        Map<String, byte[]> m = new LinkedHashMap<>();
+        for (int i = 0; i < nameThenBytes.length; i += 2) m.put((String) nameThenBytes[i], (byte[]) nameThenBytes[i + 1]);
+        return m;
+    }
+
+    private static byte[] diff(Path from, Path to) throws IOException {
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        JarDelta.diff(from, to, patch);
+        return patch.toByteArray();
+    }
+
+    @Test
+    void applyRebuildsTheNewJarByteForByte() throws Exception {
+        byte[] assets = random(200_000, 1);
+        Path v1 = jar("mod-1.0.jar", entries(
+                "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(),
+                "assets/big.bin", assets,
+                "com/example/Mod.class", random(4_000, 2),
+                "com/example/Gone.class", random(1_000, 3)));
+        Path v2 = jar("mod-1.1.jar", entries(
+                "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(),
+                "assets/big.bin", assets,
+                "com/example/Mod.class", random(4_200, 4),          // changed
+                "com/example/New.class", random(800, 5)));          // added; Gone.class removed
+
+        byte[] patch = diff(v1, v2);
+        Path out = tmp.resolve("rebuilt.jar");
+        String sha = JarDelta.apply(v1, new ByteArrayInputStream(patch), out);
+
+        assertArrayEquals(Files.readAllBytes(v2), Files.readAllBytes(out));
+        assertEquals(ModIndex.hash(v2)[1], sha);
+        assertTrue(patch.length < 20_000, "unchanged entries are copied, not carried: " + patch.length + " bytes");
+    }
+
+    @Test
+    void identicalJarsGiveATinyPatch() throws Exception {
+        Map<String, byte[]> same = entries("a.bin", random(100_000, 6), "b.txt", "hello".getBytes());
+        Path v1 = jar("same-1.jar", same);
+        Path v2 = jar("same-2.jar", same);
+        byte[] patch = diff(v1, v2);
+        assertTrue(patch.length < 1_000, patch.length + " bytes");
+
+        Path out = tmp.resolve("rebuilt.jar");
+        JarDelta.apply(v1, new ByteArrayInputStream(patch), out);
+        assertArrayEquals(Files.readAllBytes(v2), Files.readAllBytes(out));
+    }
+
+    @Test
+    void wrongBaseFailsTheHashCheck() throws Exception {
+        Path v1 = jar("mod-1.0.jar", entries("a.bin", random(50_000, 7)));
+        Path v2 = jar("mod-1.1.jar", entries("a.bin", random(50_000, 7), "b.bin", random(10, 8)));
+        Path other = jar("mod-0.9.jar", entries("a.bin", random(50_000, 9)));   // same layout, other bytes
+
+        byte[] patch = diff(v1, v2);
+        IOException e = assertThrows(IOException.class,
+                () -> JarDelta.apply(other, new ByteArrayInputStream(patch), tmp.resolve("out.jar")));
+        assertTrue(e.getMessage().contains("SHA-512 mismatch"), e.getMessage());
+    }
+
+    @Test
+    void somethingElseIsNotTakenForAPatch() throws Exception {
+        Path v1 = jar("mod-1.0.jar", entries("a.bin", random(100, 10)));
+        ByteArrayOutputStream junk = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(junk))) {
+            out.writeInt(0xCAFEBABE);
+            out.writeByte(1);
+        }
+        IOException e = assertThrows(IOException.class,
+                () -> JarDelta.apply(v1, new ByteArrayInputStream(junk.toByteArray()), tmp.resolve("out.jar")));
+        assertEquals("not a jar delta", e.getMessage());
+    }
+
+    @Test
+    void truncatedPatchIsRejected() throws Exception {
+        Path v1 = jar("mod-1.0.jar", entries("a.bin", random(30_000, 11)));
+        Path v2 = jar("mod-1.1.jar", entries("a.bin", random(30_000, 12)));
+        byte[] patch = diff(v1, v2);
+        // re-pack only the first half of the patch stream
+        byte[] raw = new InflaterInputStream(new ByteArrayInputStream(patch)).readAllBytes();
+        ByteArrayOutputStream cut = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(cut)) {
+            out.write(raw, 0, raw.length / 2);
+        }
+        assertThrows(IOException.class,
+                () -> JarDelta.apply(v1, new ByteArrayInputStream(cut.toByteArray()), tmp.resolve("out.jar")));
+    }
+
+    @Test
+    void versionsOfOneModShareAKey() {
+        assertEquals("harambefmod", JarDelta.modKey(Path.of("harambefmod-1.4.2.jar")));
+        assertEquals("harambefmod", JarDelta.modKey(Path.of("HarambeFMod-1.5.0+build.7.jar")));
+        assertEquals("sodium", JarDelta.modKey(Path.of("sodium_v0.6.0.jar")));
+        assertNotEquals(JarDelta.modKey(Path.of("foo-1.0.jar")), JarDelta.modKey(Path.of("foobar-1.0.jar")));
+    }
+
+    @Test
+    void buildSideWritesPatchesAndAnIndex() throws Exception {
+        byte[] assets = random(200_000, 13);
+        Path oldDir = Files.createDirectories(tmp.resolve("old"));
+        Path newDir = Files.createDirectories(tmp.resolve("new"));
+        Path v1 = jar("old/mod-1.0.jar", entries("assets/big.bin", assets, "Mod.class", random(2_000, 14)));
+        Path v2 = jar("new/mod-1.1.jar", entries("assets/big.bin", assets, "Mod.class", random(2_100, 15)));
+        jar("new/unrelated-2.0.jar", entries("x", random(10, 16)));
+        Path outDir = tmp.resolve("deltas");
+
+        JarDelta.main(new String[]{oldDir.toString(), newDir.toString(), outDir.toString()});
+
+        JsonNode index = Main.JSON.readTree(outDir.resolve("deltas.json").toFile());
+        assertEquals(1, index.path("patches").size());
+        JsonNode p = index.path("patches").get(0);
+        assertEquals("mod-1.1.jar", p.path("target").asText());
+        assertEquals(ModIndex.hash(v1)[1], p.path("from").asText());
+        assertEquals(ModIndex.hash(v2)[1], p.path("to").asText());
+
+        Path out = tmp.resolve("rebuilt.jar");
+        try (var in = Files.newInputStream(outDir.resolve(p.path("file").asText()))) {
+            JarDelta.apply(v1, in, out);
+        }
+        assertArrayEquals(Files.readAllBytes(v2), Files.readAllBytes(out));
+    }
+}
@@ -0,0 +1,188 @@
+package net.anatomyworld.hfd;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** A peer and a client on loopback; the "real" source is a local HTTP server counting its requests. */
+class LanPeerTest {
+
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    @TempDir Path tmp;
+
+    private final List<AutoCloseable> open = new ArrayList<>();
+    private final List<String> log = new CopyOnWriteArrayList<>();
+    private final AtomicInteger originRequests = new AtomicInteger();
+    private String origin;
+    private String oldStore, oldPeers;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        oldStore = System.getProperty("hfd.store");
+        oldPeers = System.getProperty("hfd.lan.peers");
+        System.setProperty("hfd.store", tmp.resolve("client-store").toString());
+        origin = url(serveBytes("/files/", name -> data(name))) + "/files/";
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ModFetcher.endRun(s -> {});
+        for (AutoCloseable c : open) c.close();
+        restore("hfd.store", oldStore);
+        restore("hfd.lan.peers", oldPeers);
+    }
+
+    @Test
+    void objectIsFetchedFromThePeer() throws Exception {
+        ArtifactStore peerStore = new ArtifactStore(tmp.resolve("peer-store"));
+        peerStore.ingest(stage("a.jar"), sha512(data("a.jar")));
+        usePeers(url(peer(peerStore)));
+
+        Path got = fetch("a.jar");
+        assertArrayEquals(data("a.jar"), Files.readAllBytes(got));
+        assertEquals(0, originRequests.get(), "nothing from the real source");
+    }
+
+    @Test
+    void missFallsBackToTheRealSource() throws Exception {
+        usePeers(url(peer(new ArtifactStore(tmp.resolve("peer-store")))));
+
+        Path got = fetch("a.jar");
+        assertArrayEquals(data("a.jar"), Files.readAllBytes(got));
+        assertEquals(1, originRequests.get());
+        assertTrue(log.stream().anyMatch(l -> l.startsWith("Not on LAN peer")), log.toString());
+    }
+
+    @Test
+    void corruptStoreObjectIsNotServed() throws Exception {
+        ArtifactStore peerStore = new ArtifactStore(tmp.resolve("peer-store"));
+        Path obj = peerStore.ingest(stage("a.jar"), sha512(data("a.jar")));
+        // bit rot: same size and mtime, so only a re-hash can tell
+        FileTime mtime = Files.getLastModifiedTime(obj);
+        byte[] rotten = data("a.jar");
+        rotten[100] ^= 1;
+        Files.write(obj, rotten);
+        Files.setLastModifiedTime(obj, mtime);
+        usePeers(url(peer(peerStore)));
+
+        Path got = fetch("a.jar");
+        assertArrayEquals(data("a.jar"), Files.readAllBytes(got));
+        assertEquals(1, originRequests.get());
+        assertFalse(Files.exists(obj), "the peer drops what it won't serve");
+    }
+
+    @Test
+    void wrongBytesFromAPeerAreRefused() throws Exception {
+        byte[] garbage = new byte[1024];
+        usePeers(url(serveBytes(LanPeer.OBJECTS, sha -> garbage)));
+
+        Path got = fetch("a.jar");
+        assertArrayEquals(data("a.jar"), Files.readAllBytes(got));
+        assertEquals(1, originRequests.get());
+        assertTrue(log.stream().anyMatch(l -> l.startsWith("Not on LAN peer") && l.contains("mismatch")), log.toString());
+    }
+
+    @Test
+    void unreachablePeerIsSkippedForTheRestOfTheRun() throws Exception {
+        int closedPort;
+        try (ServerSocket s = new ServerSocket(0, 1, LOOPBACK)) { closedPort = s.getLocalPort(); }
+        usePeers("http://" + host() + ":" + closedPort);
+
+        fetch("a.jar");
+        fetch("b.jar");
+        assertEquals(2, originRequests.get());
+        assertEquals(1, log.stream().filter(l -> l.contains("unreachable")).count(), log.toString());
+
+        ModFetcher.endRun(s -> {}); // a new run asks it again
+        assertEquals(1, LanPeer.objectUrls(sha512(data("c.jar"))).size());
+    }
+
+    // ----------- Helpers ------------
+
+    /** Deterministic content per file name. */
+    private static byte[] data(String name) {
+        byte[] b = new byte[64 * 1024];
+        new Random(name.hashCode()).nextBytes(b);
+        return b;
+    }
+
+    private static String sha512(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-512").digest(data));
+    }
+
+    private Path stage(String name) throws Exception {
+        Path p = tmp.resolve("staged-" + name);
+        Files.write(p, data(name));
+        return p;
+    }
+
+    private Path fetch(String name) throws Exception {
+        ModFetcher.FileInfo f = new ModFetcher.FileInfo(origin + name, name, sha512(data(name)));
+        ModFetcher.Resolved r = new ModFetcher.Resolved(name, f, false, List.of(f.url()));
+        return new ModFetcher().fetchResolved(r, tmp.resolve("game/mods"), log::add);
+    }
+
+    private LanPeer peer(ArtifactStore store) throws Exception {
+        LanPeer p = LanPeer.serve(store, LOOPBACK, 0, false, log::add);
+        open.add(p);
+        return p;
+    }
+
+    private interface Body { byte[] of(String lastSegment) throws Exception; }
+
+    /** A plain HTTP server answering {@code prefix<x>} with {@code body.of(x)}; counts requests unless it's a peer. */
+    private HttpServer serveBytes(String prefix, Body body) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(LOOPBACK, 0), 0);
+        server.createContext(prefix, ex -> {
+            try (ex) {
+                if (!prefix.equals(LanPeer.OBJECTS)) originRequests.incrementAndGet();
+                byte[] b = body.of(ex.getRequestURI().getPath().substring(prefix.length()));
+                ex.sendResponseHeaders(200, b.length);
+                try (OutputStream out = ex.getResponseBody()) { out.write(b); }
+            } catch (Exception e) {
+                ex.sendResponseHeaders(500, -1);
+            }
+        });
+        server.start();
+        open.add(() -> server.stop(0));
+        return server;
+    }
+
+    private void usePeers(String... urls) {
+        System.setProperty("hfd.lan.peers", String.join(",", urls));
+    }
+
+    private static String url(HttpServer s) { return "http://" + host() + ":" + s.getAddress().getPort(); }
+
+    private static String url(LanPeer p) { return "http://" + host() + ":" + p.port(); }
+
+    private static String host() {
+        return LOOPBACK instanceof Inet6Address ? "[" + LOOPBACK.getHostAddress() + "]" : LOOPBACK.getHostAddress();
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) System.clearProperty(key);
+        else System.setProperty(key, value);
+    }
+}
@@ -0,0 +1,124 @@
+package net.anatomyworld.hfd;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModIndexTest {
+
+    @TempDir Path tmp;
+
+    private static String sha(String alg, byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance(alg).digest(data));
+    }
+
+    private Path mods() throws Exception {
+        return Files.createDirectories(tmp.resolve("game/mods"));
+    }
+
+    private static Path write(Path p, String text, long mtime) throws Exception {
+        Files.writeString(p, text);
+        Files.setLastModifiedTime(p, FileTime.fromMillis(mtime));
+        return p;
+    }
+
+    @Test
+    void recordHashesBothDigests() throws Exception {
+        Path jar = write(mods().resolve("a.jar"), "alpha", 1_000_000);
+        ModIndex.Entry e = ModIndex.of(jar.getParent()).record(jar);
+        assertEquals("a.jar", e.name());
+        assertEquals(sha("SHA-1", "alpha".getBytes()), e.sha1());
+        assertEquals(sha("SHA-512", "alpha".getBytes()), e.sha512());
+    }
+
+    @Test
+    void unchangedFileIsNotHashedAgain() throws Exception {
+        Path jar = write(mods().resolve("a.jar"), "alpha", 1_000_000);
+        ModIndex index = ModIndex.of(jar.getParent());
+        ModIndex.Entry first = index.record(jar);
+        assertSame(first, index.record(jar));
+
+        write(jar, "omega", 2_000_000); // same size, new mtime
+        ModIndex.Entry second = index.record(jar);
+        assertNotSame(first, second);
+        assertEquals(sha("SHA-512", "omega".getBytes()), second.sha512());
+    }
+
+    @Test
+    void lookupsIgnoreHashCaseWhateverTheLocale() throws Exception {
+        Locale before = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            Path jar = write(mods().resolve("a.jar"), "alpha", 1_000_000);
+            ModIndex index = ModIndex.of(jar.getParent());
+            ModIndex.Entry e = index.record(jar);
+            assertSame(e, index.findBySha512(e.sha512().toUpperCase(Locale.ROOT)));
+            assertSame(e, index.findBySha1(e.sha1().toUpperCase(Locale.ROOT)));
+            assertTrue(index.isCurrent(jar, e.sha512().toUpperCase(Locale.ROOT)));
+        } finally {
+            Locale.setDefault(before);
+        }
+    }
+
+    @Test
+    void modifiedOrDeletedFileIsNotCurrent() throws Exception {
+        Path jar = write(mods().resolve("a.jar"), "alpha", 1_000_000);
+        ModIndex index = ModIndex.of(jar.getParent());
+        String sha512 = index.record(jar).sha512();
+
+        write(jar, "alpha!", 1_000_000);
+        assertFalse(index.isCurrent(jar, sha512));
+        assertNull(index.findBySha512(sha512));
+
+        Files.delete(jar);
+        assertNull(index.lookup(jar));
+        assertFalse(index.isCurrent(jar, sha512));
+    }
+
+    @Test
+    void refreshDropsVanishedFilesAndIndexesNewOnes() throws Exception {
+        Path dir = mods();
+        Path a = write(dir.resolve("a.jar"), "alpha", 1_000_000);
+        ModIndex index = ModIndex.of(dir);
+        String shaA = index.record(a).sha512();
+
+        Files.delete(a);
+        Path b = write(dir.resolve("b.jar"), "beta", 1_000_000);
+        index.refresh();
+        assertNull(index.findBySha512(shaA));
+        assertTrue(index.isCurrent(b, sha("SHA-512", "beta".getBytes())));
+    }
+
+    @Test
+    void savedIndexIsReadBackWithoutRehashing() throws Exception {
+        Path dir = mods();
+        Path jar = write(dir.resolve("a.jar"), "alpha", Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        ModIndex index = ModIndex.of(dir);
+        index.record(jar);
+        index.save();
+        assertTrue(Files.isRegularFile(tmp.resolve("game/.hfd/mods-index.json")));
+
+        // a second installer process: same folder, nothing in memory
+        Files.writeString(tmp.resolve("game/.hfd/mods-index.json"),
+                Files.readString(tmp.resolve("game/.hfd/mods-index.json")).replace(
+                        sha("SHA-1", "alpha".getBytes()), "sha1-from-disk"));
+        ModIndex fresh = new ModIndex(dir.toAbsolutePath().normalize());
+        assertEquals("sha1-from-disk", fresh.lookup(jar).sha1(), "unchanged file: the stored entry is trusted");
+    }
+
+    @Test
+    void sameFolderSharesOneInstance() throws Exception {
+        Path dir = mods();
+        assertSame(ModIndex.of(dir), ModIndex.of(dir.resolve("../mods")));
+        assertNotSame(ModIndex.of(dir), ModIndex.of(Files.createDirectories(tmp.resolve("other/mods"))));
+    }
+}
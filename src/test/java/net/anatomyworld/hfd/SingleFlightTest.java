@@ -0,0 +1,140 @@
+package net.anatomyworld.hfd;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void successIsRememberedUntilCleared() throws Exception {
+        SingleFlight<String, String> calls = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        SingleFlight.Loader<String> loader = () -> "v" + loads.incrementAndGet();
+
+        assertEquals("v1", calls.get("k", loader));
+        assertEquals("v1", calls.get("k", loader));
+        assertEquals(1, calls.sharedCount());
+
+        calls.clear();
+        assertEquals(0, calls.sharedCount());
+        assertEquals("v2", calls.get("k", loader));
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String, Integer> calls = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch inLoad = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SingleFlight.Loader<Integer> loader = () -> {
+            inLoad.countDown();
+            release.await();
+            return loads.incrementAndGet();
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<Integer> leader = pool.submit(() -> calls.get("k", loader));
+            inLoad.await();
+            List<Future<Integer>> waiters = new ArrayList<>();
+            for (int i = 0; i < 7; i++) waiters.add(pool.submit(() -> calls.get("k", loader)));
+            Thread.sleep(50); // let them queue up behind the leader
+            release.countDown();
+
+            assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+            for (Future<Integer> w : waiters) assertEquals(1, w.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertEquals(7, calls.sharedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failureIsNotRemembered() throws Exception {
+        SingleFlight<String, String> calls = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        SingleFlight.Loader<String> flaky = () -> {
+            if (loads.incrementAndGet() == 1) throw new IOException("first try fails");
+            return "ok";
+        };
+
+        IOException e = assertThrows(IOException.class, () -> calls.get("k", flaky));
+        assertEquals("first try fails", e.getMessage());
+        assertEquals("ok", calls.get("k", flaky));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void waiterSeesTheLeadersFailure() throws Exception {
+        SingleFlight<String, String> calls = new SingleFlight<>();
+        CountDownLatch inLoad = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> calls.get("k", () -> {
+                inLoad.countDown();
+                release.await();
+                throw new IOException("server said no");
+            }));
+            inLoad.await();
+            Future<String> waiter = pool.submit(() -> calls.get("k", () -> "waiter loaded it"));
+            Thread.sleep(50);
+            release.countDown();
+
+            ExecutionException a = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, a.getCause());
+            // the waiter either shared the failure or (if it arrived after) loaded for itself
+            try {
+                assertEquals("waiter loaded it", waiter.get(5, TimeUnit.SECONDS));
+            } catch (ExecutionException b) {
+                assertEquals("server said no", b.getCause().getMessage());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void waiterRetriesWhenOnlyTheLeaderWasCancelled() throws Exception {
+        SingleFlight<String, String> calls = new SingleFlight<>();
+        CountDownLatch inLoad = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> calls.get("k", () -> {
+                inLoad.countDown();
+                release.await();
+                throw new CancellationException("leader aborted");
+            }));
+            inLoad.await();
+            Future<String> waiter = pool.submit(() -> calls.get("k", () -> "retried"));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertEquals("retried", waiter.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void rememberedValueThatIsNoLongerValidIsLoadedAgain() throws Exception {
+        SingleFlight<String, String> calls = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        SingleFlight.Loader<String> loader = () -> "v" + loads.incrementAndGet();
+
+        assertEquals("v1", calls.get("k", loader, v -> true));
+        assertEquals("v2", calls.get("k", loader, v -> !v.equals("v1")));
+        assertEquals("v2", calls.get("k", loader, v -> !v.equals("v1")));
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,137 @@
+package net.anatomyworld.hfd;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolidPayloadTest {
+
+    private static final int CHUNK = 64 * 1024;
+
+    @TempDir Path tmp;
+
+    private static String sha512(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-512").digest(data));
+    }
+
+    private record Packed(ObjectNode index, byte[] data) {
+        SolidPayload open(ArtifactStore store) {
+            return SolidPayload.of(index, () -> new ByteArrayInputStream(data), store);
+        }
+    }
+
+    /** Same layout packSolidPayload writes: files back to back, cut into independently compressed chunks. */
+    private static Packed pack(Map<String, byte[]> entries) throws Exception {
+        ObjectNode index = Main.JSON.createObjectNode();
+        index.put("version", 1);
+        index.put("chunkSize", CHUNK);
+        ArrayNode files = index.putArray("files");
+        ByteArrayOutputStream solid = new ByteArrayOutputStream();
+        for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+            ObjectNode f = files.addObject();
+            f.put("path", e.getKey());
+            f.put("offset", solid.size());
+            f.put("size", e.getValue().length);
+            f.put("sha512", sha512(e.getValue()));
+            solid.write(e.getValue());
+        }
+        byte[] all = solid.toByteArray();
+        ArrayNode chunks = index.putArray("chunks");
+        ByteArrayOutputStream xz = new ByteArrayOutputStream();
+        for (int off = 0; off < all.length; off += CHUNK) {
+            int len = Math.min(CHUNK, all.length - off);
+            ByteArrayOutputStream one = new ByteArrayOutputStream();
+            try (XZOutputStream out = new XZOutputStream(one, new LZMA2Options(1))) {
+                out.write(all, off, len);
+            }
+            ObjectNode c = chunks.addObject();
+            c.put("compressedSize", one.size());
+            c.put("offset", off);
+            c.put("size", len);
+            one.writeTo(xz);
+        }
+        return new Packed(index, xz.toByteArray());
+    }
+
+    private static Map<String, byte[]> sample() {
+        Random rnd = new Random(42);
+        Map<String, byte[]> m = new LinkedHashMap<>();
+        for (String name : new String[] {"embedded/mods/a.jar.bin", "embedded/empty.jar.bin", "embedded/external/b.jar.bin", "embedded/neoforge-installer.jar.bin"}) {
+            byte[] b = new byte[name.contains("empty") ? 0 : 20_000 + rnd.nextInt(150_000)]; // spans chunk boundaries
+            rnd.nextBytes(b);
+            m.put(name, b);
+        }
+        return m;
+    }
+
+    @Test
+    void unpacksEveryFileIntact() throws Exception {
+        Map<String, byte[]> entries = sample();
+        SolidPayload payload = pack(entries).open(new ArtifactStore(tmp.resolve("store")));
+
+        for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+            assertTrue(payload.contains(e.getKey()));
+            assertArrayEquals(e.getValue(), Files.readAllBytes(payload.object(e.getKey())), e.getKey());
+        }
+        assertFalse(payload.contains("embedded/mods/other.jar.bin"));
+        assertThrows(IOException.class, () -> payload.object("embedded/mods/other.jar.bin"));
+    }
+
+    @Test
+    void readsTheStreamOnlyOnce() throws Exception {
+        Packed packed = pack(sample());
+        int[] opens = {0};
+        SolidPayload payload = SolidPayload.of(packed.index(), () -> {
+            opens[0]++;
+            return new ByteArrayInputStream(packed.data());
+        }, new ArtifactStore(tmp.resolve("store")));
+        payload.object("embedded/mods/a.jar.bin");
+        payload.object("embedded/external/b.jar.bin");
+        assertEquals(1, opens[0]);
+    }
+
+    @Test
+    void storedFilesAreNotDecodedAgain() throws Exception {
+        Map<String, byte[]> entries = sample();
+        Packed packed = pack(entries);
+        ArtifactStore store = new ArtifactStore(tmp.resolve("store"));
+        packed.open(store).object("embedded/mods/a.jar.bin");
+
+        // everything is in the store now: a new payload never opens the stream
+        SolidPayload again = SolidPayload.of(packed.index(), () -> { throw new IOException("should not read"); }, store);
+        assertArrayEquals(entries.get("embedded/external/b.jar.bin"), Files.readAllBytes(again.object("embedded/external/b.jar.bin")));
+    }
+
+    @Test
+    void hashMismatchFailsTheUnpack() throws Exception {
+        Packed packed = pack(sample());
+        ((ObjectNode) packed.index().path("files").get(0)).put("sha512", sha512(new byte[] {1}));
+        SolidPayload payload = packed.open(new ArtifactStore(tmp.resolve("store")));
+        IOException e = assertThrows(IOException.class, () -> payload.object("embedded/mods/a.jar.bin"));
+        assertTrue(e.getMessage().contains("SHA-512 mismatch"), e.getMessage());
+    }
+
+    @Test
+    void missingStreamIsReported() throws Exception {
+        SolidPayload payload = SolidPayload.of(pack(sample()).index(), () -> (InputStream) null, new ArtifactStore(tmp.resolve("store")));
+        assertThrows(FileNotFoundException.class, () -> payload.object("embedded/mods/a.jar.bin"));
+    }
+}